@@ -0,0 +1,118 @@
+package com.adhoc.slcsp;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Sets up a scratch copy of the input files for a benchmark, so that runs never touch the files in the data directory.
+ * <p>
+ * The reference data (plans.csv and zips.csv) is copied as it is.  The request file is built to the requested number
+ * of rows by cycling through the zip codes of the sample slcsp.csv, and kept as slcsp-original.csv, so that it can be
+ * copied back into place after each run overwrites slcsp.csv with its results.
+ * <p>
+ * Alternatively, give a number of plans in place of {@link #SAMPLE_PLANS} to run against a generated dataset with
+ * that many plans.  The request file is then generated too, with zip codes drawn from the generated zips.csv.
+ */
+final class BenchmarkData {
+
+    /**
+     * The system property naming the directory holding the sample input files
+     */
+    static final String DATA_DIR_PROPERTY = "slcsp.data.dir";
+
+    private static final String DEFAULT_DATA_DIR = "./data";
+
+    /**
+     * The value of a benchmark's plans parameter that selects the sample data, rather than a generated dataset
+     */
+    static final String SAMPLE_PLANS = "sample";
+
+    /**
+     * The number of zip codes in the sample request file
+     */
+    static final int SAMPLE_REQUEST_ROWS = 51;
+
+    static final String INPUT_OUTPUT_FILE_NAME = "slcsp.csv";
+
+    private static final String ORIGINAL_FILE_NAME = "slcsp-original.csv";
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Create a scratch directory holding the reference data and a request file of the given number of rows
+     *
+     * @param plans       {@link #SAMPLE_PLANS} for the sample data, or the number of plans in a generated dataset
+     * @param requestRows the number of zip codes in the request file
+     * @return the scratch directory, ready to be processed
+     */
+    static Path prepare(final String plans, final int requestRows) throws IOException {
+        if (!SAMPLE_PLANS.equals(plans)) {
+            return prepareSynthetic(Integer.parseInt(plans), requestRows);
+        }
+
+        final Path sourceDir = Paths.get(System.getProperty(DATA_DIR_PROPERTY, DEFAULT_DATA_DIR));
+        final Path dir = Files.createTempDirectory("slcsp-bench");
+        Files.copy(sourceDir.resolve(SlcspIndex.PLANS_FILE_NAME), dir.resolve(SlcspIndex.PLANS_FILE_NAME));
+        Files.copy(sourceDir.resolve(SlcspIndex.ZIPS_FILE_NAME), dir.resolve(SlcspIndex.ZIPS_FILE_NAME));
+
+        final List<String> sampleZipCodes;
+        try (
+                final Stream<String> lines = Files.lines(sourceDir.resolve(ORIGINAL_FILE_NAME), StandardCharsets.UTF_8)
+        ) {
+            sampleZipCodes = lines.skip(1).filter(x -> !x.isEmpty()).collect(Collectors.toList());
+        }
+        try (
+                final BufferedWriter writer = Files.newBufferedWriter(dir.resolve(ORIGINAL_FILE_NAME), StandardCharsets.UTF_8)
+        ) {
+            writer.write("zipcode,rate\n");
+            for (int i = 0; i < requestRows; i++) {
+                writer.write(sampleZipCodes.get(i % sampleZipCodes.size()));
+                writer.write('\n');
+            }
+        }
+        restoreInput(dir);
+        return dir;
+    }
+
+    /**
+     * Create a scratch directory holding a generated dataset with the given number of plans, and a request file of
+     * the given number of rows
+     */
+    private static Path prepareSynthetic(final int planCount, final int requestRows) throws IOException {
+        final Path dir = Files.createTempDirectory("slcsp-bench");
+        SyntheticDataset.scaledTo(planCount, requestRows, SyntheticDataset.DEFAULT_MULTI_RATE_AREA_ZIP_SHARE,
+                SyntheticDataset.DEFAULT_SPARSE_RATE_AREA_SHARE, 1L).writeTo(dir);
+        return dir;
+    }
+
+    /**
+     * Copy the request file back into place, over the results of the previous run
+     */
+    static void restoreInput(final Path dir) throws IOException {
+        Files.copy(dir.resolve(ORIGINAL_FILE_NAME), dir.resolve(INPUT_OUTPUT_FILE_NAME),
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Remove a scratch directory and everything in it
+     */
+    static void delete(final Path dir) throws IOException {
+        try (
+                final Stream<Path> files = Files.list(dir)
+        ) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+}
@@ -0,0 +1,68 @@
+package com.adhoc.slcsp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole runs, from the input files to the results file, at several sizes of request file.  Each run is measured
+ * as the single-shot time of one call, since that is how the application is used; the request file is put back in
+ * place (outside the measurement) before every call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    @Param({"51", "100000", "1000000"})
+    public int requestRows;
+
+    @Param({BenchmarkData.SAMPLE_PLANS})
+    public String plans;
+
+    private final SlcspFinder finder = new SlcspFinder();
+
+    private Path dir;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = BenchmarkData.prepare(plans, requestRows);
+    }
+
+    @Setup(Level.Invocation)
+    public void restoreInput() throws IOException {
+        BenchmarkData.restoreInput(dir);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(dir);
+    }
+
+    @Benchmark
+    public void process() {
+        finder.process(dir.toString());
+    }
+
+    @Benchmark
+    public void processStreaming() {
+        finder.processStreaming(dir.toString());
+    }
+}
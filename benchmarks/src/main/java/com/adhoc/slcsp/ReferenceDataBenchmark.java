@@ -0,0 +1,84 @@
+package com.adhoc.slcsp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The stages that turn the reference data into the SLCSP index, each measured on its own:
+ * <ul>
+ * <li>plan reduction: plans.csv down to the SLCSP of each rate area</li>
+ * <li>zip grouping: zips.csv into the rate area(s) of each zip code</li>
+ * <li>final join: the two tables above into the SLCSP of each zip code</li>
+ * </ul>
+ * Zip grouping is measured both for every zip code (as for a snapshot or the lookup service) and for just the zip
+ * codes of a request file (as for a batch run).  The reference data is the sample data or generated datasets of
+ * growing size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReferenceDataBenchmark {
+
+    @Param({BenchmarkData.SAMPLE_PLANS, "1000000", "5000000"})
+    public String plans;
+
+    private Path dir;
+    private Path plansFile;
+    private Path zipsFile;
+    private ZipCodeSet requestedZips;
+    private long[] rateAreaToSlcsp;
+    private ZipRateAreaTable zipRateAreaTable;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = BenchmarkData.prepare(plans, BenchmarkData.SAMPLE_REQUEST_ROWS);
+        plansFile = dir.resolve(SlcspIndex.PLANS_FILE_NAME);
+        zipsFile = dir.resolve(SlcspIndex.ZIPS_FILE_NAME);
+        requestedZips = ZipCodeSet.of(new SlcspFinder().buildInputList(
+                dir.resolve(BenchmarkData.INPUT_OUTPUT_FILE_NAME).toString()));
+        rateAreaToSlcsp = SlcspIndex.buildRateAreaToSlcspTable(plansFile);
+        zipRateAreaTable = SlcspIndex.buildZipRateAreaTable(zipsFile, ZipCodeSet.all());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(dir);
+    }
+
+    @Benchmark
+    public long[] planReduction() {
+        return SlcspIndex.buildRateAreaToSlcspTable(plansFile);
+    }
+
+    @Benchmark
+    public ZipRateAreaTable zipGroupingAllZips() {
+        return SlcspIndex.buildZipRateAreaTable(zipsFile, ZipCodeSet.all());
+    }
+
+    @Benchmark
+    public ZipRateAreaTable zipGroupingRequestedZips() {
+        return SlcspIndex.buildZipRateAreaTable(zipsFile, requestedZips);
+    }
+
+    @Benchmark
+    public long[] finalJoin() {
+        return SlcspIndex.buildFinalZipToSlcspPriceTable(zipRateAreaTable, rateAreaToSlcsp);
+    }
+}
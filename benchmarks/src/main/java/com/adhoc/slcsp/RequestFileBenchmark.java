@@ -0,0 +1,73 @@
+package com.adhoc.slcsp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The stages that handle the request file, each measured on its own, at several sizes of request file:
+ * <ul>
+ * <li>input load: slcsp.csv into the ordered list of zip codes</li>
+ * <li>result writing: the results for that list, looked up in the index, out to a file</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestFileBenchmark {
+
+    @Param({"51", "100000", "1000000"})
+    public int requestRows;
+
+    @Param({BenchmarkData.SAMPLE_PLANS})
+    public String plans;
+
+    private final SlcspFinder finder = new SlcspFinder();
+
+    private Path dir;
+    private String inputFileSpec;
+    private String resultFileSpec;
+    private List<String> inputList;
+    private SlcspIndex slcspIndex;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = BenchmarkData.prepare(plans, requestRows);
+        inputFileSpec = dir.resolve(BenchmarkData.INPUT_OUTPUT_FILE_NAME).toString();
+        resultFileSpec = dir.resolve("results.csv").toString();
+        inputList = finder.buildInputList(inputFileSpec);
+        slcspIndex = SlcspIndex.load(dir);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(dir);
+    }
+
+    @Benchmark
+    public List<String> inputLoad() {
+        return finder.buildInputList(inputFileSpec);
+    }
+
+    @Benchmark
+    public void resultWriting() {
+        finder.writeResults(resultFileSpec, inputList, slcspIndex);
+    }
+}
@@ -0,0 +1,133 @@
+package com.adhoc.slcsp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches the data directory of a {@link ReloadableSlcspIndex}, and reloads the index when plans.csv or zips.csv is
+ * written or replaced.  Only the side of the index whose file changed is reloaded; both, if both changed.
+ * <p>
+ * A file is usually written in several pieces, each of which is noticed, so the reload waits until neither file has
+ * changed for a quiet period.  If a file is still incomplete after that (so can't be loaded), the index in use is
+ * kept, and the next change to the file tries again.
+ * <p>
+ * Reloads happen in the background, on the index's own thread, so lookups carry on throughout.
+ */
+final class DataDirectoryWatcher implements Closeable {
+
+    /**
+     * How long, by default, to wait after the last change to a file before reloading it
+     */
+    static final long DEFAULT_QUIET_MILLIS = 2000;
+
+    private final ReloadableSlcspIndex index;
+    private final long quietMillis;
+    private final Consumer<String> messages;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    /**
+     * @param index       the index to reload
+     * @param dataDir     the directory holding the plans.csv and zips.csv the index is loaded from
+     * @param quietMillis how long to wait after the last change to a file before reloading it
+     * @param messages    receives a message after each reload, saying whether it worked, and any problem stopping
+     * @throws IOException if the directory can't be watched
+     */
+    DataDirectoryWatcher(final ReloadableSlcspIndex index, final Path dataDir, final long quietMillis,
+                         final Consumer<String> messages) throws IOException {
+        this.index = index;
+        this.quietMillis = quietMillis;
+        this.messages = messages;
+        this.watchService = dataDir.getFileSystem().newWatchService();
+        dataDir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = new Thread(this::watch, "slcsp-watch");
+        thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Stop watching.  A reload already asked for still goes ahead.  This is called while shutting down, so a problem
+     * closing the watch service is only reported, leaving the rest of the shutdown to carry on.
+     */
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            messages.accept("Problem closing the watch service: " + e);
+        }
+    }
+
+    private void watch() {
+        boolean plansChanged = false;
+        boolean zipsChanged = false;
+        long reloadAtNanos = 0;
+        try {
+            while (true) {
+                final WatchKey key;
+                if (plansChanged || zipsChanged) {
+                    key = watchService.poll(Math.max(0, reloadAtNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } else {
+                    key = watchService.take();
+                }
+
+                if (key == null) {
+                    // quiet for long enough, so the files are taken to be complete
+                    reload(plansChanged, zipsChanged);
+                    plansChanged = false;
+                    zipsChanged = false;
+                    continue;
+                }
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    final boolean overflow = event.kind() == StandardWatchEventKinds.OVERFLOW;
+                    final String fileName = overflow ? null : event.context().toString();
+                    final boolean plansEvent = overflow || SlcspIndex.PLANS_FILE_NAME.equals(fileName);
+                    final boolean zipsEvent = overflow || SlcspIndex.ZIPS_FILE_NAME.equals(fileName);
+                    if (plansEvent || zipsEvent) {
+                        plansChanged |= plansEvent;
+                        zipsChanged |= zipsEvent;
+                        reloadAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(quietMillis);
+                    }
+                }
+                if (!key.reset()) {
+                    messages.accept("The data directory can no longer be watched; reloads must now be asked for");
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // stopped watching
+        }
+    }
+
+    private void reload(final boolean plansChanged, final boolean zipsChanged) {
+        final String changed;
+        final CompletableFuture<SlcspIndex> reload;
+        if (plansChanged && zipsChanged) {
+            changed = SlcspIndex.PLANS_FILE_NAME + " and " + SlcspIndex.ZIPS_FILE_NAME;
+            reload = index.reload();
+        } else if (plansChanged) {
+            changed = SlcspIndex.PLANS_FILE_NAME;
+            reload = index.reloadPlans();
+        } else {
+            changed = SlcspIndex.ZIPS_FILE_NAME;
+            reload = index.reloadZips();
+        }
+        reload.whenComplete((slcspIndex, e) -> messages.accept(e == null
+                ? "Reloaded " + changed + " in " + slcspIndex.getLoadMillis() + "ms: Answering lookups for '"
+                + slcspIndex.getDatasetVersion() + "'"
+                : "Problem reloading " + changed + ", so still answering lookups for '"
+                + index.current().getDatasetVersion() + "': " + e));
+    }
+}
@@ -0,0 +1,370 @@
+package com.adhoc.slcsp;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * The reduced reference data (the SLCSP of each rate area, and the rate area(s) of each zip code), compiled from
+ * plans.csv and zips.csv into a compact binary file.  Loading a snapshot takes milliseconds, since there is no CSV
+ * to parse, and the reference data only changes a few times a year.
+ * <p>
+ * The file is laid out as follows (big-endian):
+ * <pre>
+ *   magic             8 bytes, "SLCSPSNP"
+ *   format version    int
+ *   created           long, epoch millis
+ *   dataset version   int length, then that many UTF-8 bytes
+ *   plans.csv         long size, long last-modified millis, long data rows
+ *   zips.csv          long size, long last-modified millis, long data rows
+ *   rate areas        int count, then count x (int rate area id, long slcsp)
+ *   zip codes         int count, then count x (int zip, int rate area count, rate area count x int rate area id)
+ *   checksum          long, CRC32 of everything before it
+ * </pre>
+ * Only rate areas that have an SLCSP, and zip codes that have a rate area, are written.  The sizes and modification
+ * times of the source files are recorded so that a snapshot that is older than its sources can be detected.
+ */
+final class DatasetSnapshot {
+
+    /**
+     * The name of the snapshot file, in the same directory as the input files
+     */
+    static final String FILE_NAME = "slcsp-reference.snapshot";
+
+    private static final byte[] MAGIC = "SLCSPSNP".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int FORMAT_VERSION = 3;
+
+    private final String datasetVersion;
+    private final long createdMillis;
+    private final SourceFingerprint plansFingerprint;
+    private final SourceFingerprint zipsFingerprint;
+    private final long planRows;
+    private final long zipRows;
+    private final long[] rateAreaToSlcsp;
+    private final ZipRateAreaTable zipRateAreaTable;
+
+    private DatasetSnapshot(final String datasetVersion, final long createdMillis,
+                            final SourceFingerprint plansFingerprint, final SourceFingerprint zipsFingerprint,
+                            final long planRows, final long zipRows,
+                            final long[] rateAreaToSlcsp, final ZipRateAreaTable zipRateAreaTable) {
+        this.datasetVersion = datasetVersion;
+        this.createdMillis = createdMillis;
+        this.plansFingerprint = plansFingerprint;
+        this.zipsFingerprint = zipsFingerprint;
+        this.planRows = planRows;
+        this.zipRows = zipRows;
+        this.rateAreaToSlcsp = rateAreaToSlcsp;
+        this.zipRateAreaTable = zipRateAreaTable;
+    }
+
+    String getDatasetVersion() {
+        return datasetVersion;
+    }
+
+    long getCreatedMillis() {
+        return createdMillis;
+    }
+
+    /**
+     * @return the number of data rows in the plans.csv the snapshot was compiled from
+     */
+    long getPlanRows() {
+        return planRows;
+    }
+
+    /**
+     * @return the number of data rows in the zips.csv the snapshot was compiled from
+     */
+    long getZipRows() {
+        return zipRows;
+    }
+
+    /**
+     * @return the SLCSP of each rate area, indexed by rate area id; {@link Rates#NO_RATE} where there is none
+     */
+    long[] getRateAreaToSlcsp() {
+        return rateAreaToSlcsp;
+    }
+
+    /**
+     * @return the rate area(s) of every zip code in zips.csv
+     */
+    ZipRateAreaTable getZipRateAreaTable() {
+        return zipRateAreaTable;
+    }
+
+    /**
+     * @return the size and modification time of the plans.csv the snapshot was compiled from
+     */
+    SourceFingerprint getPlansFingerprint() {
+        return plansFingerprint;
+    }
+
+    /**
+     * @return the size and modification time of the zips.csv the snapshot was compiled from
+     */
+    SourceFingerprint getZipsFingerprint() {
+        return zipsFingerprint;
+    }
+
+    /**
+     * Check whether a file is a snapshot in the format this version of the application reads, compiled from the given
+     * files as they are now.  Only the header of the snapshot is read.  A snapshot written by another version should be
+     * compiled again, rather than read.  A source file that no longer exists is taken to be unchanged, so a snapshot
+     * can be used on its own.
+     *
+     * @return true if the snapshot is in the current format, and neither source file has changed since it was compiled
+     * @throws IOException if the file can't be read
+     */
+    static boolean isCurrent(final Path snapshotFile, final Path plansFile, final Path zipsFile) throws IOException {
+        final MappedByteBuffer buffer;
+        try (
+                final FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)
+        ) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            final byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(MAGIC, magic) || buffer.getInt() != FORMAT_VERSION) {
+                return false;
+            }
+            buffer.getLong();   // created
+            final int versionLength = buffer.getInt();
+            if (versionLength < 0 || versionLength > buffer.remaining()) {
+                return false;
+            }
+            buffer.position(buffer.position() + versionLength);
+            final SourceFingerprint plansFingerprint = SourceFingerprint.readFrom(buffer);
+            buffer.getLong();   // plan rows
+            final SourceFingerprint zipsFingerprint = SourceFingerprint.readFrom(buffer);
+            return (!Files.exists(plansFile) || plansFingerprint.equals(SourceFingerprint.of(plansFile)))
+                    && (!Files.exists(zipsFile) || zipsFingerprint.equals(SourceFingerprint.of(zipsFile)));
+        } catch (BufferUnderflowException e) {
+            // too short to hold a header
+            return false;
+        }
+    }
+
+    /**
+     * Write a snapshot of the given reference data.  The snapshot is written to a temporary file first, and then moved
+     * into place, so a reader never sees a partly-written snapshot.
+     *
+     * @param snapshotFile     where to write the snapshot
+     * @param datasetVersion   a label identifying this version of the reference data
+     * @param plansFingerprint the plans.csv the data was compiled from, as it was before it was read
+     * @param zipsFingerprint  the zips.csv the data was compiled from, as it was before it was read
+     * @param planRows         the number of data rows in plans.csv
+     * @param zipRows          the number of data rows in zips.csv
+     * @param rateAreaToSlcsp  the SLCSP of each rate area, indexed by rate area id
+     * @param zipRateAreaTable the rate area(s) of every zip code
+     * @throws IOException if the snapshot can't be written
+     */
+    static void write(final Path snapshotFile, final String datasetVersion, final SourceFingerprint plansFingerprint,
+                      final SourceFingerprint zipsFingerprint, final long planRows, final long zipRows,
+                      final long[] rateAreaToSlcsp, final ZipRateAreaTable zipRateAreaTable) throws IOException {
+        final Path tempFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        final CRC32 checksum = new CRC32();
+        try (
+                final OutputStream fileOutputStream = Files.newOutputStream(tempFile);
+                final CheckedOutputStream checkedOutputStream = new CheckedOutputStream(new BufferedOutputStream(fileOutputStream), checksum);
+                final DataOutputStream out = new DataOutputStream(checkedOutputStream)
+        ) {
+            out.write(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(System.currentTimeMillis());
+            final byte[] versionBytes = datasetVersion.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(versionBytes.length);
+            out.write(versionBytes);
+            plansFingerprint.writeTo(out);
+            out.writeLong(planRows);
+            zipsFingerprint.writeTo(out);
+            out.writeLong(zipRows);
+
+            int rateAreaCount = 0;
+            for (long slcsp : rateAreaToSlcsp) {
+                if (slcsp != Rates.NO_RATE) {
+                    rateAreaCount++;
+                }
+            }
+            out.writeInt(rateAreaCount);
+            for (int rateAreaId = 0; rateAreaId < rateAreaToSlcsp.length; rateAreaId++) {
+                if (rateAreaToSlcsp[rateAreaId] != Rates.NO_RATE) {
+                    out.writeInt(rateAreaId);
+                    out.writeLong(rateAreaToSlcsp[rateAreaId]);
+                }
+            }
+
+            int zipCount = 0;
+            for (int zip = 0; zip < ZipRateAreaTable.ZIP_CODE_SPACE; zip++) {
+                if (zipRateAreaTable.get(zip) != ZipRateAreaTable.UNKNOWN) {
+                    zipCount++;
+                }
+            }
+            out.writeInt(zipCount);
+            for (int zip = 0; zip < ZipRateAreaTable.ZIP_CODE_SPACE; zip++) {
+                final int rateAreaId = zipRateAreaTable.get(zip);
+                if (rateAreaId != ZipRateAreaTable.UNKNOWN) {
+                    final int[] rateAreaIds = rateAreaId >= 0 ? new int[]{rateAreaId} : zipRateAreaTable.getAll(zip);
+                    out.writeInt(zip);
+                    out.writeInt(rateAreaIds.length);
+                    for (int id : rateAreaIds) {
+                        out.writeInt(id);
+                    }
+                }
+            }
+
+            out.writeLong(checksum.getValue());
+        }
+        Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Load a snapshot, mapping the file into memory
+     *
+     * @param snapshotFile the snapshot to read
+     * @return the snapshot
+     * @throws IOException           if the snapshot can't be read
+     * @throws IllegalStateException if the file isn't a snapshot, is of an unsupported format version, or is corrupt
+     */
+    static DatasetSnapshot read(final Path snapshotFile) throws IOException {
+        return read(snapshotFile, StageMetrics.NONE);
+    }
+
+    /**
+     * As {@link #read(Path)}, adding the bytes read, and the rate areas and zip codes loaded, to the given stage
+     */
+    static DatasetSnapshot read(final Path snapshotFile, final StageMetrics metrics) throws IOException {
+        try (
+                final FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)
+        ) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            verifyChecksum(snapshotFile, buffer);
+            return readVerified(snapshotFile, buffer, metrics);
+        }
+    }
+
+    /**
+     * Read a snapshot whose checksum has been verified
+     */
+    private static DatasetSnapshot readVerified(final Path snapshotFile, final MappedByteBuffer buffer,
+                                                final StageMetrics metrics) {
+        try {
+            final byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            final int formatVersion = buffer.getInt();
+            if (!Arrays.equals(MAGIC, magic) || formatVersion != FORMAT_VERSION) {
+                throw new IllegalStateException("'" + snapshotFile + "' is not a snapshot of format version "
+                        + FORMAT_VERSION);
+            }
+            final long createdMillis = buffer.getLong();
+            final byte[] versionBytes = new byte[buffer.getInt()];
+            buffer.get(versionBytes);
+            final SourceFingerprint plansFingerprint = SourceFingerprint.readFrom(buffer);
+            final long planRows = buffer.getLong();
+            final SourceFingerprint zipsFingerprint = SourceFingerprint.readFrom(buffer);
+            final long zipRows = buffer.getLong();
+
+            final long[] rateAreaToSlcsp = new long[RateAreaIds.ID_SPACE];
+            Arrays.fill(rateAreaToSlcsp, Rates.NO_RATE);
+            final int rateAreaCount = buffer.getInt();
+            for (int i = 0; i < rateAreaCount; i++) {
+                final int rateAreaId = buffer.getInt();
+                rateAreaToSlcsp[rateAreaId] = buffer.getLong();
+            }
+
+            final ZipRateAreaTable zipRateAreaTable = new ZipRateAreaTable();
+            final int zipCount = buffer.getInt();
+            for (int i = 0; i < zipCount; i++) {
+                final int zip = buffer.getInt();
+                final int rateAreaIdCount = buffer.getInt();
+                for (int j = 0; j < rateAreaIdCount; j++) {
+                    zipRateAreaTable.add(zip, buffer.getInt());
+                }
+            }
+
+            metrics.setDataset(snapshotFile.toString());
+            metrics.addRows(rateAreaCount + zipCount);
+            metrics.addBytes(buffer.limit());
+            return new DatasetSnapshot(new String(versionBytes, StandardCharsets.UTF_8), createdMillis,
+                    plansFingerprint, zipsFingerprint, planRows, zipRows, rateAreaToSlcsp, zipRateAreaTable);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            // only possible if the checksum matches by chance
+            throw new IllegalStateException("'" + snapshotFile + "' is corrupt: " + e);
+        }
+    }
+
+    private static void verifyChecksum(final Path snapshotFile, final MappedByteBuffer buffer) {
+        final int checksumOffset = buffer.limit() - Long.BYTES;
+        if (checksumOffset < MAGIC.length) {
+            throw new IllegalStateException("'" + snapshotFile + "' is too short to be a snapshot");
+        }
+        final CRC32 checksum = new CRC32();
+        final ByteBuffer content = buffer.duplicate();
+        content.limit(checksumOffset);
+        checksum.update(content);
+        if (checksum.getValue() != buffer.getLong(checksumOffset)) {
+            throw new IllegalStateException("'" + snapshotFile + "' is corrupt: its checksum doesn't match");
+        }
+    }
+
+
+    /**
+     * The size and modification time of a source file, used to tell whether it has changed.  An index built from the
+     * CSV files takes the fingerprints of its files before reading them, so that a file replaced while it was being
+     * read makes the snapshot out of date, rather than current.
+     */
+    static final class SourceFingerprint {
+        final long size;
+        final long lastModifiedMillis;
+
+        SourceFingerprint(final long size, final long lastModifiedMillis) {
+            this.size = size;
+            this.lastModifiedMillis = lastModifiedMillis;
+        }
+
+        long getLastModifiedMillis() {
+            return lastModifiedMillis;
+        }
+
+        static SourceFingerprint of(final Path file) throws IOException {
+            return new SourceFingerprint(Files.size(file), Files.getLastModifiedTime(file).toMillis());
+        }
+
+        static SourceFingerprint readFrom(final ByteBuffer buffer) {
+            return new SourceFingerprint(buffer.getLong(), buffer.getLong());
+        }
+
+        void writeTo(final DataOutputStream out) throws IOException {
+            out.writeLong(size);
+            out.writeLong(lastModifiedMillis);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final SourceFingerprint that = (SourceFingerprint) o;
+            return size == that.size && lastModifiedMillis == that.lastModifiedMillis;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(size) * 31 + Long.hashCode(lastModifiedMillis);
+        }
+    }
+}
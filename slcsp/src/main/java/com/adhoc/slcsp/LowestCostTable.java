@@ -0,0 +1,136 @@
+package com.adhoc.slcsp;
+
+import java.util.Arrays;
+
+/**
+ * Tracks the lowest few distinct plan costs seen so far for each metal level and rate area, in a single primitive
+ * array: each (metal level, rate area id) pair has a run of slots, one per rank, in ascending order.  Costs are in
+ * {@link Rates} units.
+ * <p>
+ * As with {@link SecondLowestCostTable}, plans that have the same cost as one already seen for the metal level and
+ * rate area are treated as duplicates, and don't take up a rank.
+ * <p>
+ * The table has a run for every pair, which is large for a high number of ranks, so the chunks of a parallel scan
+ * each collect their costs in a {@link Partial} instead, and are then merged into a single table.
+ */
+final class LowestCostTable {
+
+    /**
+     * Marks a slot that hasn't been filled yet; higher than any real cost
+     */
+    private static final long NONE = Long.MAX_VALUE;
+
+    private static final int PAIR_COUNT = MetalLevel.values().length * RateAreaIds.ID_SPACE;
+
+    private final int maxRank;
+    private final long[] lowest;
+
+    /**
+     * @param maxRank the number of distinct costs to keep for each metal level and rate area
+     */
+    LowestCostTable(final int maxRank) {
+        this.maxRank = maxRank;
+        this.lowest = new long[PAIR_COUNT * maxRank];
+        Arrays.fill(lowest, NONE);
+    }
+
+    /**
+     * Take account of all the plan costs seen by a partial table with the same number of ranks
+     */
+    void addAll(final Partial partial) {
+        for (int pair = 0; pair < PAIR_COUNT; pair++) {
+            final int partialFirst = partial.firstSlots[pair];
+            if (partialFirst >= 0) {
+                for (int slot = partialFirst; slot < partialFirst + maxRank && partial.lowest[slot] != NONE; slot++) {
+                    add(lowest, pair * maxRank, maxRank, partial.lowest[slot]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Hand over the costs kept, in the layout described above.  The table's own array is handed over rather than a
+     * copy, since the table can be large, so the table can't be used afterwards.
+     *
+     * @return the costs, with {@link Rates#NO_RATE} in the slots of any rank with no cost
+     */
+    long[] toLowestCosts() {
+        for (int slot = 0; slot < lowest.length; slot++) {
+            if (lowest[slot] == NONE) {
+                lowest[slot] = Rates.NO_RATE;
+            }
+        }
+        return lowest;
+    }
+
+    /**
+     * @return the index of the slot of the lowest cost of the given metal level and rate area, in a table keeping the
+     * given number of ranks
+     */
+    static int firstSlot(final int metalLevelOrdinal, final int rateAreaId, final int maxRank) {
+        return pair(metalLevelOrdinal, rateAreaId) * maxRank;
+    }
+
+    private static int pair(final int metalLevelOrdinal, final int rateAreaId) {
+        return metalLevelOrdinal * RateAreaIds.ID_SPACE + rateAreaId;
+    }
+
+    /**
+     * Take account of another plan cost in the run of slots starting at the given one
+     */
+    private static void add(final long[] lowest, final int first, final int maxRank, final long planCost) {
+        for (int slot = first; slot < first + maxRank; slot++) {
+            if (planCost == lowest[slot]) {
+                return;
+            }
+            if (planCost < lowest[slot]) {
+                // make room, dropping the highest cost kept
+                System.arraycopy(lowest, slot, lowest, slot + 1, first + maxRank - 1 - slot);
+                lowest[slot] = planCost;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Tracks the lowest few distinct plan costs of a single chunk of plans.csv.  Only the (metal level, rate area)
+     * pairs the chunk has plans for are given a run of slots, in the order they're first seen, so a partial takes up
+     * a fixed index of one int per pair, plus the runs actually used.
+     */
+    static final class Partial implements PlansCsvScanner.PlanHandler {
+        private final int maxRank;
+
+        /**
+         * The first slot of the run of each (metal level, rate area id) pair, or -1 if it has no plans yet
+         */
+        private final int[] firstSlots = new int[PAIR_COUNT];
+
+        private long[] lowest;
+        private int slotCount;
+
+        /**
+         * @param maxRank the number of distinct costs to keep for each metal level and rate area
+         */
+        Partial(final int maxRank) {
+            this.maxRank = maxRank;
+            this.lowest = new long[16 * maxRank];
+            Arrays.fill(firstSlots, -1);
+        }
+
+        @Override
+        public void onPlan(final MetalLevel metalLevel, final int rateAreaId, final long planCost) {
+            final int pair = pair(metalLevel.ordinal(), rateAreaId);
+            int first = firstSlots[pair];
+            if (first < 0) {
+                if (slotCount == lowest.length) {
+                    lowest = Arrays.copyOf(lowest, slotCount * 2);
+                }
+                first = slotCount;
+                slotCount += maxRank;
+                Arrays.fill(lowest, first, slotCount, NONE);
+                firstSlots[pair] = first;
+            }
+            add(lowest, first, maxRank, planCost);
+        }
+    }
+}
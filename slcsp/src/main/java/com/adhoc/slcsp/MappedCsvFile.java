@@ -0,0 +1,359 @@
+package com.adhoc.slcsp;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * A read-only, memory-mapped view of a CSV file, handed out one row at a time as a range of bytes.
+ * <p>
+ * No Strings are created while scanning: the row handler is given the mapped buffer and the bounds of the row, and
+ * is expected to pick out whatever fields it needs directly from the bytes.
+ * <p>
+ * A single mapping cannot exceed 2GB, so larger files are mapped as a series of windows.  Each window ends on a line
+ * boundary, so a row is never split across two buffers.
+ * <p>
+ * The data rows can also be split into newline-aligned chunks that are scanned in parallel, each chunk with its own
+ * handler.
+ */
+final class MappedCsvFile {
+
+    /**
+     * Upper bound on the size of a single mapped window
+     */
+    private static final long MAX_WINDOW_BYTES = 1L << 30;
+
+    /**
+     * Lower bound on the size of a chunk scanned in parallel; smaller files are split into fewer chunks
+     */
+    private static final long MIN_CHUNK_BYTES = 256 * 1024;
+
+    private final Path path;
+
+    /**
+     * Receives the rows of the file
+     */
+    interface RowHandler {
+        /**
+         * @param buffer the mapped window containing the row
+         * @param start  the index of the first byte of the row
+         * @param end    the index just past the last byte of the row, not including the line terminator
+         */
+        void onRow(ByteBuffer buffer, int start, int end);
+    }
+
+    /**
+     * Receives the rows of the file, along with where each row is in the file
+     */
+    interface PositionedRowHandler {
+        /**
+         * @param buffer    the mapped window containing the row
+         * @param start     the index of the first byte of the row
+         * @param end       the index just past the last byte of the row, not including the line terminator
+         * @param rowOffset the offset of the first byte of the row in the file
+         */
+        void onRow(ByteBuffer buffer, int start, int end, long rowOffset);
+    }
+
+    MappedCsvFile(final Path path) {
+        this.path = path;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * Hand every row after the header line to the given handler, in file order.  Blank rows are skipped.
+     *
+     * @param handler receives the rows
+     * @throws IOException if the file can't be opened or mapped
+     */
+    void forEachDataRow(final RowHandler handler) throws IOException {
+        forEachDataRow(handler, StageMetrics.NONE);
+    }
+
+    /**
+     * As {@link #forEachDataRow(RowHandler)}, adding the rows and bytes scanned to the given stage
+     */
+    void forEachDataRow(final RowHandler handler, final StageMetrics metrics) throws IOException {
+        try (
+                final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)
+        ) {
+            final long size = channel.size();
+            final long from = firstDataRowOffset(channel, size);
+            metrics.setDataset(path.toString());
+            metrics.addRows(forEachRow(channel, from, size, handler));
+            metrics.addBytes(size - from);
+        }
+    }
+
+    /**
+     * As {@link #forEachDataRow(RowHandler)}, also giving the handler the offset of each row in the file
+     */
+    void forEachDataRow(final PositionedRowHandler handler) throws IOException {
+        try (
+                final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)
+        ) {
+            final long size = channel.size();
+            forEachRow(channel, firstDataRowOffset(channel, size), size, false, handler);
+        }
+    }
+
+    /**
+     * As {@link #forEachDataRow(RowHandler)}, but blank rows are handed to the handler too, as empty ranges, so that
+     * the handler sees every line after the header line, as a BufferedReader would read them
+     */
+    void forEachDataLine(final RowHandler handler) throws IOException {
+        try (
+                final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)
+        ) {
+            final long size = channel.size();
+            forEachRow(channel, firstDataRowOffset(channel, size), size, true,
+                    (buffer, start, end, rowOffset) -> handler.onRow(buffer, start, end));
+        }
+    }
+
+    /**
+     * Split the rows after the header line into newline-aligned chunks, one per available core (fewer for small
+     * files), and scan the chunks in parallel.  Each chunk gets its own handler, so handlers need not be thread-safe.
+     * <p>
+     * The rows and bytes scanned, and the allocations of the threads that scan the chunks, are added to the given
+     * stage.
+     *
+     * @param handlerFactory creates the handler for a chunk.  Called once per chunk, on the thread that scans it.
+     * @param metrics        the stage the scan is part of
+     * @param <H>            the type of handler
+     * @return the handlers, in the order of the chunks in the file
+     * @throws IOException if the file can't be opened or mapped
+     */
+    <H extends RowHandler> List<H> forEachDataRowInParallel(final Supplier<H> handlerFactory,
+                                                            final StageMetrics metrics) throws IOException {
+        return forEachDataRowInParallel(handlerFactory, Runtime.getRuntime().availableProcessors(), metrics);
+    }
+
+    /**
+     * As {@link #forEachDataRowInParallel(Supplier, StageMetrics)}, but split into (up to) the given number of chunks
+     */
+    <H extends RowHandler> List<H> forEachDataRowInParallel(final Supplier<H> handlerFactory, final int maxChunks,
+                                                            final StageMetrics metrics) throws IOException {
+        try (
+                final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)
+        ) {
+            final long size = channel.size();
+            final long[] boundaries = chunkBoundaries(channel, firstDataRowOffset(channel, size), size, maxChunks);
+            metrics.setDataset(path.toString());
+            return IntStream.range(0, boundaries.length - 1)
+                    .parallel()
+                    .mapToObj(i -> {
+                        final long checkpoint = metrics.startWorkerPart();
+                        final H handler = handlerFactory.get();
+                        try {
+                            metrics.addRows(forEachRow(channel, boundaries[i], boundaries[i + 1], handler));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        metrics.addBytes(boundaries[i + 1] - boundaries[i]);
+                        metrics.endWorkerPart(checkpoint);
+                        return handler;
+                    })
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Get the offsets that split the given range into (up to) the given number of chunks.  Every offset other than the
+     * last is the start of a row.
+     *
+     * @return the chunk boundaries: chunk i runs from boundaries[i] up to boundaries[i + 1]
+     */
+    private static long[] chunkBoundaries(final FileChannel channel, final long from, final long to,
+                                          final int maxChunks) throws IOException {
+        final int chunkCount = (int) Math.max(1, Math.min(maxChunks, (to - from) / MIN_CHUNK_BYTES));
+        final long[] boundaries = new long[chunkCount + 1];
+        boundaries[0] = from;
+        int boundaryCount = 1;
+        for (int i = 1; i < chunkCount; i++) {
+            final long target = Math.max(from + (to - from) * i / chunkCount, boundaries[boundaryCount - 1]);
+            final long rowStart = nextRowStart(channel, target, to);
+            if (rowStart > boundaries[boundaryCount - 1] && rowStart < to) {
+                boundaries[boundaryCount++] = rowStart;
+            }
+        }
+        boundaries[boundaryCount++] = to;
+        return Arrays.copyOf(boundaries, boundaryCount);
+    }
+
+    /**
+     * Get the offset of the first row that starts after the given offset
+     */
+    private static long nextRowStart(final FileChannel channel, final long offset, final long to) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long position = offset;
+        while (position < to) {
+            buffer.clear();
+            final int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return to;
+    }
+
+    /**
+     * Get the offset of the first byte after the header line
+     */
+    private long firstDataRowOffset(final FileChannel channel, final long size) throws IOException {
+        final MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(MAX_WINDOW_BYTES, size));
+        final int limit = window.limit();
+        for (int i = 0; i < limit; i++) {
+            if (window.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Hand the rows found between the given offsets to the handler.
+     *
+     * @param from the offset of the start of a row
+     * @param to   the offset just past the end of a row (or the end of the file)
+     * @return the number of rows handed to the handler
+     */
+    private long forEachRow(final FileChannel channel, final long from, final long to,
+                            final RowHandler handler) throws IOException {
+        return forEachRow(channel, from, to, false,
+                (buffer, start, end, rowOffset) -> handler.onRow(buffer, start, end));
+    }
+
+    /**
+     * As {@link #forEachRow(FileChannel, long, long, RowHandler)}, also giving the handler the offset of each row
+     *
+     * @param keepBlankRows whether blank rows are handed to the handler, rather than skipped
+     */
+    private long forEachRow(final FileChannel channel, final long from, final long to, final boolean keepBlankRows,
+                            final PositionedRowHandler handler) throws IOException {
+        long rows = 0;
+        long windowStart = from;
+        while (windowStart < to) {
+            final long windowLength = Math.min(MAX_WINDOW_BYTES, to - windowStart);
+            final boolean lastWindow = windowStart + windowLength == to;
+            final MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+            final int limit = (int) windowLength;
+
+            int rowStart = 0;
+            for (int i = 0; i < limit; i++) {
+                if (window.get(i) == '\n') {
+                    rows += handleRow(window, rowStart, i, windowStart, keepBlankRows, handler);
+                    rowStart = i + 1;
+                }
+            }
+
+            if (rowStart < limit) {
+                if (lastWindow) {
+                    // final row, with no line terminator
+                    rows += handleRow(window, rowStart, limit, windowStart, keepBlankRows, handler);
+                    rowStart = limit;
+                } else if (rowStart == 0) {
+                    throw new IllegalStateException("Row starting at offset " + windowStart + " of '" + path
+                            + "' is longer than " + MAX_WINDOW_BYTES + " bytes");
+                }
+            }
+            // the next window starts with the first row not handled in this one
+            windowStart += rowStart;
+        }
+        return rows;
+    }
+
+    /**
+     * Find the next occurrence of the given byte in a row
+     *
+     * @return the index of the byte, or -1 if it isn't found before the end of the range
+     */
+    static int indexOf(final ByteBuffer buffer, final int from, final int end, final byte value) {
+        for (int i = from; i < end; i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Check whether the bytes in the given range are exactly the given (ASCII) value
+     */
+    static boolean rangeEquals(final ByteBuffer buffer, final int start, final int end, final byte[] value) {
+        if (end - start != value.length) {
+            return false;
+        }
+        for (int i = 0; i < value.length; i++) {
+            if (buffer.get(start + i) != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parse a non-negative decimal integer from the given range
+     *
+     * @return the value, or -1 if the range is empty or contains anything other than digits
+     */
+    static int parseNonNegativeInt(final ByteBuffer buffer, final int start, final int end) {
+        if (start >= end || end - start > 9) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            final int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Render a row as text, for use in error messages
+     */
+    static String rowToString(final ByteBuffer buffer, final int start, final int end) {
+        final byte[] bytes = new byte[end - start];
+        for (int i = start; i < end; i++) {
+            bytes[i - start] = buffer.get(i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return 1 if the row was handed to the handler, or 0 if it was blank and skipped
+     */
+    private static int handleRow(final ByteBuffer buffer, final int start, final int lineEnd, final long windowStart,
+                                 final boolean keepBlankRows, final PositionedRowHandler handler) {
+        final int end = lineEnd > start && buffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+        if (end > start || keepBlankRows) {
+            handler.onRow(buffer, start, end, windowStart + start);
+            return 1;
+        }
+        return 0;
+    }
+}
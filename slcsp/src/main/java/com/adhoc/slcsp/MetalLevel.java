@@ -0,0 +1,53 @@
+package com.adhoc.slcsp;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The metal levels a plan in plans.csv can have, each recognised straight from the bytes of its metal_level field
+ */
+public enum MetalLevel {
+    BRONZE("Bronze"),
+    SILVER("Silver"),
+    GOLD("Gold"),
+    PLATINUM("Platinum"),
+    CATASTROPHIC("Catastrophic");
+
+    private static final MetalLevel[] ALL = values();
+
+    private final String name;
+    private final byte[] nameBytes;
+
+    MetalLevel(final String name) {
+        this.name = name;
+        this.nameBytes = name.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return the metal level as it's written in plans.csv, e.g. "Silver"
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Check whether the given range of bytes is this metal level's name
+     */
+    boolean matches(final ByteBuffer buffer, final int start, final int end) {
+        return MappedCsvFile.rangeEquals(buffer, start, end, nameBytes);
+    }
+
+    /**
+     * Get the metal level named in the given range of bytes
+     *
+     * @return the metal level, or null if the range isn't the name of one
+     */
+    static MetalLevel parse(final ByteBuffer buffer, final int start, final int end) {
+        for (MetalLevel metalLevel : ALL) {
+            if (metalLevel.matches(buffer, start, end)) {
+                return metalLevel;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,214 @@
+package com.adhoc.slcsp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Picks the Silver plans (or the plans of every metal level) out of plans.csv, working directly on the bytes of the
+ * memory-mapped file.
+ * <p>
+ * Only the metal_level, rate and rate_area fields are examined, and nothing is allocated per row: the rate is parsed
+ * straight from its digits into a fixed-point long, and the state and rate area number straight into a rate area id.
+ * <p>
+ * The file is split into newline-aligned chunks which are scanned in parallel, each into its own partial result.
+ */
+final class PlansCsvScanner {
+
+    private static final byte[] ADD_OPERATION = "add".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] REMOVE_OPERATION = "remove".getBytes(StandardCharsets.US_ASCII);
+
+    private final MappedCsvFile file;
+
+    /**
+     * Receives the Silver plans found in the file
+     */
+    interface SilverPlanHandler {
+        /**
+         * @param rateAreaId the id of the rate area of the plan
+         * @param planCost   the rate of the plan, in {@link Rates} units
+         */
+        void onSilverPlan(int rateAreaId, long planCost);
+    }
+
+    /**
+     * Receives the plans of every metal level found in the file
+     */
+    interface PlanHandler {
+        /**
+         * @param metalLevel the metal level of the plan
+         * @param rateAreaId the id of the rate area of the plan
+         * @param planCost   the rate of the plan, in {@link Rates} units
+         */
+        void onPlan(MetalLevel metalLevel, int rateAreaId, long planCost);
+    }
+
+    /**
+     * Receives the Silver plans added and removed by a plan delta file
+     */
+    interface SilverPlanChangeHandler {
+        /**
+         * @param rateAreaId the id of the rate area of the plan
+         * @param planCost   the rate of the plan, in {@link Rates} units
+         */
+        void onSilverPlanAdded(int rateAreaId, long planCost);
+
+        /**
+         * @param rateAreaId the id of the rate area of the plan
+         * @param planCost   the rate of the plan, in {@link Rates} units
+         */
+        void onSilverPlanRemoved(int rateAreaId, long planCost);
+    }
+
+    PlansCsvScanner(final Path path) {
+        this.file = new MappedCsvFile(path);
+    }
+
+    /**
+     * Scan the file in parallel chunks, handing the Silver plans in each chunk to a partial result for that chunk.
+     * Partial results are only ever used by one thread, so need not be thread-safe.
+     *
+     * @param partialFactory creates an empty partial result
+     * @param metrics        the stage the scan is part of
+     * @param <P>            the type of partial result
+     * @return the partial results, which between them have seen every Silver plan in the file
+     * @throws IOException if the file can't be read
+     */
+    <P extends SilverPlanHandler> List<P> scanInParallel(final Supplier<P> partialFactory,
+                                                         final StageMetrics metrics) throws IOException {
+        return file.forEachDataRowInParallel(() -> {
+            final P partial = partialFactory.get();
+            return new ChunkScan<>(partial, MetalLevel.SILVER, (metalLevel, rateAreaId, planCost) ->
+                    partial.onSilverPlan(rateAreaId, planCost));
+        }, metrics)
+                .stream()
+                .map(x -> x.partial)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * As {@link #scanInParallel}, but handing on the plans of every metal level
+     */
+    <P extends PlanHandler> List<P> scanAllMetalLevelsInParallel(final Supplier<P> partialFactory,
+                                                                 final StageMetrics metrics) throws IOException {
+        return file.forEachDataRowInParallel(() -> {
+            final P partial = partialFactory.get();
+            return new ChunkScan<>(partial, null, partial);
+        }, metrics)
+                .stream()
+                .map(x -> x.partial)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Scan the file as a plan delta file, in file order.  Each row of a delta file is a plans.csv row prefixed with
+     * the operation: "add" or "remove".  A changed plan is the removal of its old row and the addition of its new one.
+     * <pre>
+     *     op,plan_id,state,metal_level,rate,rate_area
+     *     remove,74449NR9870320,GA,Silver,298.62,7
+     *     add,74449NR9870320,GA,Silver,289.62,7
+     * </pre>
+     *
+     * @param handler receives the Silver plans added and removed
+     * @return the number of rows added to plans.csv by the delta, less the number removed
+     * @throws IOException if the file can't be read
+     */
+    long scanDelta(final SilverPlanChangeHandler handler) throws IOException {
+        final PlanHandler additions = (metalLevel, rateAreaId, planCost) ->
+                handler.onSilverPlanAdded(rateAreaId, planCost);
+        final PlanHandler removals = (metalLevel, rateAreaId, planCost) ->
+                handler.onSilverPlanRemoved(rateAreaId, planCost);
+        final long[] rowChange = new long[1];
+        file.forEachDataRow((buffer, start, end) -> {
+            final int firstComma = MappedCsvFile.indexOf(buffer, start, end, (byte) ',');
+            if (firstComma < 0) {
+                throw malformedRow(buffer, start, end);
+            }
+            if (MappedCsvFile.rangeEquals(buffer, start, firstComma, ADD_OPERATION)) {
+                parseRow(buffer, firstComma + 1, end, MetalLevel.SILVER, additions);
+                rowChange[0]++;
+            } else if (MappedCsvFile.rangeEquals(buffer, start, firstComma, REMOVE_OPERATION)) {
+                parseRow(buffer, firstComma + 1, end, MetalLevel.SILVER, removals);
+                rowChange[0]--;
+            } else {
+                throw malformedRow(buffer, start, end);
+            }
+        });
+        return rowChange[0];
+    }
+
+    /**
+     * @param wanted  the metal level of the plans to hand on, or null to hand on plans of any known metal level
+     * @param handler receives the plan, if it is wanted
+     */
+    private void parseRow(final ByteBuffer buffer, final int start, final int end, final MetalLevel wanted,
+                          final PlanHandler handler) {
+        /*
+            plan_id,state,metal_level,rate,rate_area
+            74449NR9870320,GA,Silver,298.62,7
+        */
+        final byte delimiter = ',';
+        final int firstComma = MappedCsvFile.indexOf(buffer, start, end, delimiter);
+        final int secondComma = MappedCsvFile.indexOf(buffer, firstComma + 1, end, delimiter);
+        final int thirdComma = MappedCsvFile.indexOf(buffer, secondComma + 1, end, delimiter);
+        final int fourthComma = MappedCsvFile.indexOf(buffer, thirdComma + 1, end, delimiter);
+        if (firstComma < 0 || secondComma < 0 || thirdComma < 0 || fourthComma < 0) {
+            throw malformedRow(buffer, start, end);
+        }
+
+        final MetalLevel metalLevel;
+        if (wanted == null) {
+            metalLevel = MetalLevel.parse(buffer, secondComma + 1, thirdComma);
+            if (metalLevel == null) {
+                // a metal level this application doesn't know of, which (like any other level, on the Silver path)
+                // has no bearing on the benchmarks of the levels it does know
+                return;
+            }
+        } else if (wanted.matches(buffer, secondComma + 1, thirdComma)) {
+            metalLevel = wanted;
+        } else {
+            return;
+        }
+
+        final long planCost = Rates.parse(buffer, thirdComma + 1, fourthComma);
+        final int rateAreaId = RateAreaIds.parse(buffer, firstComma + 1, secondComma, fourthComma + 1, end);
+        if (planCost == Rates.NO_RATE || rateAreaId < 0) {
+            throw malformedRow(buffer, start, end);
+        }
+        handler.onPlan(metalLevel, rateAreaId, planCost);
+    }
+
+    /**
+     * The scan of a single chunk of the file
+     */
+    private final class ChunkScan<P> implements MappedCsvFile.RowHandler {
+        private final P partial;
+        private final MetalLevel wanted;
+        private final PlanHandler handler;
+
+        /**
+         * @param partial the partial result for the chunk
+         * @param wanted  the metal level of the plans to hand on, or null for all of them
+         * @param handler hands the plans on to the partial result
+         */
+        ChunkScan(final P partial, final MetalLevel wanted, final PlanHandler handler) {
+            this.partial = partial;
+            this.wanted = wanted;
+            this.handler = handler;
+        }
+
+        @Override
+        public void onRow(final ByteBuffer buffer, final int start, final int end) {
+            parseRow(buffer, start, end, wanted, handler);
+        }
+    }
+
+    private IllegalStateException malformedRow(final ByteBuffer buffer, final int start, final int end) {
+        return new IllegalStateException("Malformed row in '" + file.getPath() + "': "
+                + MappedCsvFile.rowToString(buffer, start, end));
+    }
+}
@@ -0,0 +1,86 @@
+package com.adhoc.slcsp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The measurements of a run of {@link SlcspFinder#process(String)}: one {@link StageReport} for each stage, in the
+ * order the stages were started, and the wall time of the whole run.
+ * <p>
+ * The reference data is either read from plans.csv and zips.csv ({@link #REDUCE_PLANS} and {@link #GROUP_ZIPS}, which
+ * run at the same time) or from a compiled snapshot ({@link #LOAD_SNAPSHOT}), so a run has one or the other.
+ */
+public final class ProcessReport {
+
+    /**
+     * Reading the zip codes to look up from slcsp.csv
+     */
+    public static final String READ_INPUT = "read input";
+
+    /**
+     * Finding the SLCSP of each rate area in plans.csv
+     */
+    public static final String REDUCE_PLANS = "reduce plans";
+
+    /**
+     * Finding the rate area(s) of each zip code in zips.csv
+     */
+    public static final String GROUP_ZIPS = "group zips";
+
+    /**
+     * Loading the reduced reference data from a snapshot, in place of plans.csv and zips.csv
+     */
+    public static final String LOAD_SNAPSHOT = "load snapshot";
+
+    /**
+     * Linking each zip code to the SLCSP of its rate area
+     */
+    public static final String JOIN = "join";
+
+    /**
+     * Writing the results to slcsp.csv
+     */
+    public static final String WRITE_RESULTS = "write results";
+
+    private final List<StageReport> stages;
+    private final long totalNanos;
+
+    ProcessReport(final List<StageReport> stages, final long totalNanos) {
+        this.stages = Collections.unmodifiableList(new ArrayList<>(stages));
+        this.totalNanos = totalNanos;
+    }
+
+    public List<StageReport> getStages() {
+        return stages;
+    }
+
+    /**
+     * @param name the name of a stage, e.g. {@link #REDUCE_PLANS}
+     * @return the measurements of that stage, or null if the run didn't have that stage
+     */
+    public StageReport getStage(final String name) {
+        for (StageReport stage : stages) {
+            if (stage.getName().equals(name)) {
+                return stage;
+            }
+        }
+        return null;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * @return a line per stage, as rendered by {@link StageReport#toString()}
+     */
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        for (StageReport stage : stages) {
+            builder.append(stage).append(System.lineSeparator());
+        }
+        return builder.toString();
+    }
+}
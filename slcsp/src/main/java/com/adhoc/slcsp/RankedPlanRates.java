@@ -0,0 +1,135 @@
+package com.adhoc.slcsp;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The lowest few distinct plan rates of every metal level in every rate area, gathered in a single pass over
+ * plans.csv, so that any benchmark of the form "the n-th lowest rate of a metal level" (the lowest Bronze plan, the
+ * second lowest Gold plan, the SLCSP itself...) can be answered without reading plans.csv again.
+ * <p>
+ * Rates are kept for ranks 1 (the lowest) up to a maximum rank chosen when the file is read.  The table takes up
+ * {@code 5 * 86,528 * maxRank} longs (about 3.5MB per rank), so the maximum rank should be kept to what will actually
+ * be asked for.  {@link SlcspIndex#fromFiles(Path, Path, int)} builds them along with the SLCSP of every zip code.
+ * <p>
+ * Immutable, and so safe to share between threads.
+ */
+public final class RankedPlanRates {
+
+    /**
+     * The highest maximum rank that can be asked for
+     */
+    public static final int MAX_RANK = 16;
+
+    private final int maxRank;
+
+    /**
+     * The rates, laid out as in {@link LowestCostTable}
+     */
+    private final long[] lowestCosts;
+
+    private RankedPlanRates(final int maxRank, final long[] lowestCosts) {
+        this.maxRank = maxRank;
+        this.lowestCosts = lowestCosts;
+    }
+
+    /**
+     * Read the plans of every metal level in the given plans.csv file
+     *
+     * @param plansFile the plans.csv file to read in
+     * @param maxRank   the highest rank that will be asked for, from 1 to {@link #MAX_RANK}
+     * @return the rates
+     * @throws IllegalArgumentException if the maximum rank is out of range
+     * @throws IllegalStateException    if the file can't be loaded
+     */
+    public static RankedPlanRates fromFile(final Path plansFile, final int maxRank) {
+        return fromFile(plansFile, maxRank, StageMetrics.NONE);
+    }
+
+    /**
+     * As {@link #fromFile(Path, int)}, adding the rows and bytes scanned, and the allocations of the threads that scan
+     * the file, to the given stage
+     */
+    static RankedPlanRates fromFile(final Path plansFile, final int maxRank, final StageMetrics metrics) {
+        if (maxRank < 1 || maxRank > MAX_RANK) {
+            throw new IllegalArgumentException("The maximum rank must be between 1 and " + MAX_RANK + ": " + maxRank);
+        }
+        final LowestCostTable rateAreaToCosts = new LowestCostTable(maxRank);
+        try {
+            // Chunks of the file are accumulated in parallel, and the results are then merged
+            for (LowestCostTable.Partial partial : new PlansCsvScanner(plansFile).scanAllMetalLevelsInParallel(
+                    () -> new LowestCostTable.Partial(maxRank), metrics)) {
+                rateAreaToCosts.addAll(partial);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Problem loading rateArea file ('" + plansFile + "'): " + e);
+        }
+        return new RankedPlanRates(maxRank, rateAreaToCosts.toLowestCosts());
+    }
+
+    /**
+     * @return the highest rank that can be asked for
+     */
+    public int getMaxRank() {
+        return maxRank;
+    }
+
+    /**
+     * Get the n-th lowest distinct rate of a metal level in a rate area
+     *
+     * @param metalLevel     the metal level
+     * @param rank           1 for the lowest rate, 2 for the second lowest, and so on, up to the maximum rank
+     * @param state          the two-letter state code of the rate area, e.g. "MO"
+     * @param rateAreaNumber the number of the rate area within the state
+     * @return the rate, in rate units, or -1 (the same value as {@link SlcspIndex#NO_SLCSP}) if the rate area has
+     * fewer distinct rates for the metal level (including if there is no such rate area)
+     * @throws IllegalArgumentException if the rank is out of range
+     */
+    public long getRate(final MetalLevel metalLevel, final int rank, final String state, final int rateAreaNumber) {
+        checkRank(rank);
+        final int rateAreaId = RateAreaIds.of(state, rateAreaNumber);
+        if (rateAreaId < 0) {
+            return Rates.NO_RATE;
+        }
+        return getRate(metalLevel, rank, rateAreaId);
+    }
+
+    /**
+     * As {@link #getRate(MetalLevel, int, String, int)}, for a rank already checked to be in range
+     */
+    long getRate(final MetalLevel metalLevel, final int rank, final int rateAreaId) {
+        return lowestCosts[LowestCostTable.firstSlot(metalLevel.ordinal(), rateAreaId, maxRank) + rank - 1];
+    }
+
+    /**
+     * Get the n-th lowest distinct rate of a metal level in every rate area
+     *
+     * @return a table indexed by rate area id, laid out as the SLCSP of each rate area is.  The value is
+     * {@link Rates#NO_RATE} for any rate area with fewer distinct rates for the metal level.
+     * @throws IllegalArgumentException if the rank is out of range
+     */
+    long[] toRateAreaTable(final MetalLevel metalLevel, final int rank) {
+        checkRank(rank);
+        final long[] rateAreaToCost = new long[RateAreaIds.ID_SPACE];
+        for (int rateAreaId = 0; rateAreaId < RateAreaIds.ID_SPACE; rateAreaId++) {
+            rateAreaToCost[rateAreaId] = getRate(metalLevel, rank, rateAreaId);
+        }
+        return rateAreaToCost;
+    }
+
+    /**
+     * @return roughly how many bytes of heap the rates take up
+     */
+    long getFootprintBytes() {
+        return (long) lowestCosts.length * Long.BYTES;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the rank is out of range
+     */
+    void checkRank(final int rank) {
+        if (rank < 1 || rank > maxRank) {
+            throw new IllegalArgumentException("The rank must be between 1 and " + maxRank + ": " + rank);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.adhoc.slcsp;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Rate areas are identified by a small integer id rather than a State + Number code: the id is the ordinal of the
+ * two-letter state code times a fixed stride, plus the rate area number.  Ids are parsed straight from the bytes of
+ * a row, and are dense enough to be used as indexes into primitive arrays of {@link #ID_SPACE} elements.
+ */
+final class RateAreaIds {
+
+    private static final int STATE_CODE_COUNT = 26 * 26;
+
+    /**
+     * Rate area numbers must be less than this value
+     */
+    private static final int RATE_AREA_NUMBER_STRIDE = 128;
+
+    /**
+     * The number of possible ids; every id is less than this value
+     */
+    static final int ID_SPACE = STATE_CODE_COUNT * RATE_AREA_NUMBER_STRIDE;
+
+    private RateAreaIds() {
+    }
+
+    /**
+     * Get the id of the rate area in the given state and rate area number fields
+     *
+     * @return the id, or -1 if the fields aren't a two-letter state and a rate area number
+     */
+    static int parse(final ByteBuffer buffer, final int stateStart, final int stateEnd,
+                     final int numberStart, final int numberEnd) {
+        if (stateEnd - stateStart != 2) {
+            return -1;
+        }
+        return id(buffer.get(stateStart), buffer.get(stateStart + 1),
+                MappedCsvFile.parseNonNegativeInt(buffer, numberStart, numberEnd));
+    }
+
+    /**
+     * Get the id of the rate area with the given state and rate area number
+     *
+     * @return the id, or -1 if they aren't a two-letter state and a rate area number
+     */
+    static int of(final String state, final int rateAreaNumber) {
+        if (state == null || state.length() != 2) {
+            return -1;
+        }
+        return id(state.charAt(0), state.charAt(1), rateAreaNumber);
+    }
+
+    /**
+     * @return the id of the rate area with the given state letters and rate area number, or -1 if they aren't two
+     * upper case letters and a rate area number
+     */
+    private static int id(final int firstChar, final int secondChar, final int rateAreaNumber) {
+        final int firstLetter = firstChar - 'A';
+        final int secondLetter = secondChar - 'A';
+        if (firstLetter < 0 || firstLetter >= 26 || secondLetter < 0 || secondLetter >= 26
+                || rateAreaNumber < 0 || rateAreaNumber >= RATE_AREA_NUMBER_STRIDE) {
+            return -1;
+        }
+        return (firstLetter * 26 + secondLetter) * RATE_AREA_NUMBER_STRIDE + rateAreaNumber;
+    }
+
+    /**
+     * @return the rate area code (State + Number) for the given id, e.g. "GA7"
+     */
+    static String toCode(final int id) {
+        final int stateOrdinal = id / RATE_AREA_NUMBER_STRIDE;
+        return new String(new char[]{(char) ('A' + stateOrdinal / 26), (char) ('A' + stateOrdinal % 26)})
+                + id % RATE_AREA_NUMBER_STRIDE;
+    }
+}
@@ -0,0 +1,142 @@
+package com.adhoc.slcsp;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Plan rates are held as primitive longs, in fixed-point units of a hundred-thousandth of a cent, from the moment
+ * they are parsed until they are written out.
+ * <p>
+ * Most rates are whole cents, but some plans.csv files have rates with as many as seven decimal places; this unit
+ * holds all of those exactly, so comparing two rates (and so deciding whether two plans are duplicates) is exact.
+ */
+final class Rates {
+
+    /**
+     * The number of decimal places held exactly
+     */
+    private static final int FRACTION_DIGITS = 7;
+
+    /**
+     * The number of units in one dollar
+     */
+    static final long UNITS_PER_DOLLAR = 10_000_000L;
+
+    /**
+     * Marks the absence of a rate
+     */
+    static final long NO_RATE = -1L;
+
+    /**
+     * Rates with more whole-dollar digits than this are rejected, which keeps every rate well within a long
+     */
+    private static final int MAX_WHOLE_DIGITS = 11;
+
+    /**
+     * The most bytes a rendered rate can take: the whole dollars, the decimal point, and the decimal places
+     */
+    static final int MAX_ENCODED_BYTES = MAX_WHOLE_DIGITS + 1 + FRACTION_DIGITS;
+
+    private Rates() {
+    }
+
+    /**
+     * Parse a rate such as "298.62" from the given range.  Any decimal places beyond the seventh are rounded, half up.
+     *
+     * @return the rate in units, or {@link #NO_RATE} if the range isn't a plain decimal number
+     */
+    static long parse(final ByteBuffer buffer, final int start, final int end) {
+        long whole = 0;
+        long fraction = 0;
+        int wholeDigits = 0;
+        int fractionDigits = -1;
+        boolean roundUp = false;
+        for (int i = start; i < end; i++) {
+            final byte b = buffer.get(i);
+            if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else if (b < '0' || b > '9') {
+                return NO_RATE;
+            } else if (fractionDigits < 0) {
+                whole = whole * 10 + (b - '0');
+                wholeDigits++;
+            } else if (fractionDigits < FRACTION_DIGITS) {
+                fraction = fraction * 10 + (b - '0');
+                fractionDigits++;
+            } else if (fractionDigits++ == FRACTION_DIGITS) {
+                roundUp = b >= '5';
+            }
+        }
+        if (wholeDigits + Math.max(fractionDigits, 0) == 0 || wholeDigits > MAX_WHOLE_DIGITS) {
+            return NO_RATE;
+        }
+        for (int i = Math.max(fractionDigits, 0); i < FRACTION_DIGITS; i++) {
+            fraction *= 10;
+        }
+        return whole * UNITS_PER_DOLLAR + fraction + (roundUp ? 1 : 0);
+    }
+
+    /**
+     * Render a rate as text: the whole dollars, a decimal point, and the significant decimal places (at least one),
+     * e.g. "245.2" or "300.0".  For whole-cent rates this is the same text that Float.toString gives.
+     *
+     * @param rate a rate in units
+     * @return the rate as text
+     */
+    static String toString(final long rate) {
+        return appendTo(new StringBuilder(24), rate).toString();
+    }
+
+    /**
+     * Append a rate to the given builder, as rendered by {@link #toString(long)}
+     */
+    static StringBuilder appendTo(final StringBuilder builder, final long rate) {
+        builder.append(rate / UNITS_PER_DOLLAR).append('.');
+        long fraction = rate % UNITS_PER_DOLLAR;
+        int digits = FRACTION_DIGITS;
+        while (digits > 1 && fraction % 10 == 0) {
+            fraction /= 10;
+            digits--;
+        }
+        for (long divisor = pow10(digits - 1); divisor > 0; divisor /= 10) {
+            builder.append((char) ('0' + fraction / divisor % 10));
+        }
+        return builder;
+    }
+
+    /**
+     * Put a rate into the given buffer as ASCII, as rendered by {@link #toString(long)}, without allocating.  The
+     * buffer must have room for {@link #MAX_ENCODED_BYTES}.
+     */
+    static void putTo(final ByteBuffer buffer, final long rate) {
+        putDigits(buffer, rate / UNITS_PER_DOLLAR, 1);
+        buffer.put((byte) '.');
+        long fraction = rate % UNITS_PER_DOLLAR;
+        int digits = FRACTION_DIGITS;
+        while (digits > 1 && fraction % 10 == 0) {
+            fraction /= 10;
+            digits--;
+        }
+        putDigits(buffer, fraction, digits);
+    }
+
+    /**
+     * Put a non-negative value into the given buffer as ASCII digits, zero-padded to at least the given number of digits
+     */
+    static void putDigits(final ByteBuffer buffer, final long value, final int minDigits) {
+        int digits = 1;
+        for (long remaining = value / 10; remaining > 0; remaining /= 10) {
+            digits++;
+        }
+        for (long divisor = pow10(Math.max(digits, minDigits) - 1); divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + value / divisor % 10));
+        }
+    }
+
+    private static long pow10(final int exponent) {
+        long value = 1;
+        for (int i = 0; i < exponent; i++) {
+            value *= 10;
+        }
+        return value;
+    }
+}
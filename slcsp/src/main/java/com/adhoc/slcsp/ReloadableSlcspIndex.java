@@ -0,0 +1,201 @@
+package com.adhoc.slcsp;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Holds the {@link SlcspIndex} a long-running process answers from, and replaces it with a freshly loaded one when
+ * the reference data changes, without a restart.
+ * <p>
+ * Indexes are immutable, so a reload never touches the index in use: the new index is built in the background, and
+ * then published with a single atomic reference swap.  Readers take no locks.  A reader that has called
+ * {@link #current()} keeps answering from that index until it is done (so one request is always answered from a
+ * single version of the data), and the next call to current() sees the new one.  The old index is garbage collected
+ * once the last reader using it lets go.
+ * <p>
+ * Reloads run one at a time, on a single background thread.  Asking for a reload while one is waiting to start joins
+ * that one, rather than queueing another.  If a reload fails, the current index is kept.  When only one of plans.csv
+ * and zips.csv has changed, just that side of the index can be reloaded.
+ * <p>
+ * A correction to a few plans can also be applied as a plan delta file, which recomputes the SLCSP of only the rate
+ * areas it touches, and of the zip codes in them.  Deltas and reloads of one side run on the same background thread as
+ * full reloads, in the order they were asked for.  A delta isn't written back to plans.csv, so the next reload undoes
+ * it unless plans.csv has been corrected too.
+ */
+public final class ReloadableSlcspIndex implements Closeable {
+
+    private final Supplier<SlcspIndex> loader;
+
+    /**
+     * The directory holding the plans.csv and zips.csv the index is loaded from, or null if not known
+     */
+    private final Path dataDir;
+
+    private final AtomicReference<SlcspIndex> current;
+
+    private final ExecutorService reloadExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "slcsp-reload");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The reload waiting to start, if any.  Guarded by this.
+     */
+    private CompletableFuture<SlcspIndex> waitingReload;
+
+    /**
+     * The Silver plan rates of the current index, with any deltas applied; read from plans.csv when the first delta
+     * is applied, as long as plans.csv is still the file the index was built from.  Only used on the background
+     * thread.
+     */
+    private SilverRateBook silverRateBook;
+
+    /**
+     * Load the first index, on this thread
+     *
+     * @param loader loads an index from the reference data as it is at the time.  Called once now, and again on each
+     *               reload.
+     * @throws IllegalStateException if the first index can't be loaded
+     */
+    public ReloadableSlcspIndex(final Supplier<SlcspIndex> loader) {
+        this(loader, null);
+    }
+
+    private ReloadableSlcspIndex(final Supplier<SlcspIndex> loader, final Path dataDir) {
+        this.loader = loader;
+        this.dataDir = dataDir;
+        this.current = new AtomicReference<>(loader.get());
+    }
+
+    /**
+     * Load the index for the reference data in the given directory, reloading from the same directory
+     *
+     * @param dataDir the directory holding plans.csv and zips.csv, and/or a snapshot compiled from them
+     * @return the reloadable index
+     * @see SlcspIndex#load(Path)
+     */
+    public static ReloadableSlcspIndex load(final Path dataDir) {
+        return new ReloadableSlcspIndex(() -> SlcspIndex.load(dataDir), dataDir);
+    }
+
+    /**
+     * @return the index to answer from.  Hold on to it (rather than calling this again) for lookups that must be
+     * answered from the same version of the data.
+     */
+    public SlcspIndex current() {
+        return current.get();
+    }
+
+    /**
+     * Load a new index in the background, and publish it once it's built
+     *
+     * @return completes with the new index once it has been published, or exceptionally if it couldn't be loaded
+     * (in which case the current index is kept)
+     */
+    public synchronized CompletableFuture<SlcspIndex> reload() {
+        if (waitingReload == null) {
+            final CompletableFuture<SlcspIndex> reload = new CompletableFuture<>();
+            waitingReload = reload;
+            reloadExecutor.execute(() -> {
+                synchronized (this) {
+                    // from here on, a request for a reload needs another load
+                    waitingReload = null;
+                }
+                try {
+                    final SlcspIndex slcspIndex = loader.get();
+                    current.set(slcspIndex);
+                    // the rates of the old index (and any deltas applied to it) no longer apply
+                    silverRateBook = null;
+                    reload.complete(slcspIndex);
+                } catch (RuntimeException e) {
+                    reload.completeExceptionally(e);
+                }
+            });
+        }
+        return waitingReload;
+    }
+
+    /**
+     * Apply a plan delta file to the current index in the background, and publish the changed index once it's built
+     *
+     * @param deltaFile the plan delta file: plans.csv rows, each prefixed with "add" or "remove"
+     * @return completes with the new index once it has been published, or exceptionally if the delta couldn't be
+     * applied (in which case the current index is kept).  The first delta fails if plans.csv has changed since the
+     * index was built from it, or isn't there; reload the plans first.
+     * @throws IllegalStateException if the data directory the index was loaded from isn't known
+     */
+    public CompletableFuture<SlcspIndex> applyPlanDelta(final Path deltaFile) {
+        final Path plansFile = getDataFile(SlcspIndex.PLANS_FILE_NAME);
+        return update(slcspIndex -> {
+            if (silverRateBook == null) {
+                silverRateBook = SilverRateBook.load(plansFile, slcspIndex.getPlansFingerprint());
+            }
+            return silverRateBook.apply(slcspIndex, deltaFile);
+        });
+    }
+
+    /**
+     * Rebuild the SLCSP of each rate area from plans.csv in the background, keeping the current rate areas of each
+     * zip code, and publish the new index once it's built.  Quicker than a full reload when only plans.csv has changed.
+     *
+     * @return completes with the new index once it has been published, or exceptionally if plans.csv couldn't be
+     * loaded (in which case the current index is kept)
+     * @throws IllegalStateException if the data directory the index was loaded from isn't known
+     */
+    public CompletableFuture<SlcspIndex> reloadPlans() {
+        final Path plansFile = getDataFile(SlcspIndex.PLANS_FILE_NAME);
+        return update(slcspIndex -> {
+            final SlcspIndex reloaded = slcspIndex.withPlansFrom(plansFile);
+            // the rates of the old plans.csv (and any deltas applied to it) no longer apply
+            silverRateBook = null;
+            return reloaded;
+        });
+    }
+
+    /**
+     * Rebuild the rate areas of each zip code from zips.csv in the background, keeping the current SLCSP of each rate
+     * area, and publish the new index once it's built.  Quicker than a full reload when only zips.csv has changed.
+     *
+     * @return completes with the new index once it has been published, or exceptionally if zips.csv couldn't be
+     * loaded (in which case the current index is kept)
+     * @throws IllegalStateException if the data directory the index was loaded from isn't known
+     */
+    public CompletableFuture<SlcspIndex> reloadZips() {
+        final Path zipsFile = getDataFile(SlcspIndex.ZIPS_FILE_NAME);
+        return update(slcspIndex -> slcspIndex.withZipsFrom(zipsFile));
+    }
+
+    /**
+     * Derive a new index from the current one on the background thread, after any reloads already asked for, and
+     * publish it
+     */
+    private CompletableFuture<SlcspIndex> update(final UnaryOperator<SlcspIndex> change) {
+        return CompletableFuture.supplyAsync(() -> {
+            final SlcspIndex slcspIndex = change.apply(current.get());
+            current.set(slcspIndex);
+            return slcspIndex;
+        }, reloadExecutor);
+    }
+
+    private Path getDataFile(final String fileName) {
+        if (dataDir == null) {
+            throw new IllegalStateException("Only an index loaded from a data directory can have its files reloaded");
+        }
+        return dataDir.resolve(fileName);
+    }
+
+    /**
+     * Stop the background thread, once any reloads already asked for have finished.  No more reloads can be asked for.
+     */
+    @Override
+    public void close() {
+        reloadExecutor.shutdown();
+    }
+}
@@ -0,0 +1,135 @@
+package com.adhoc.slcsp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes the results file: a "zipcode,rate" header, then one line per zip code, with an empty rate if there is no
+ * SLCSP.
+ * <p>
+ * The output is pure ASCII, so each line is encoded straight into a reusable byte buffer (the zip code as five
+ * zero-padded digits, the rate from its fixed-point long), and the buffer is written to the file channel whenever it
+ * fills.  Nothing is allocated per line: there is no String concatenation, and no charset encoder.
+ */
+final class ResultWriter implements Closeable {
+
+    private static final byte[] HEADER = "zipcode,rate".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    /**
+     * The most bytes a line can take, other than the zip code: the comma, the rate and the line separator
+     */
+    private static final int MAX_LINE_TAIL_BYTES = 1 + Rates.MAX_ENCODED_BYTES + LINE_SEPARATOR.length;
+
+    private static final int ZIP_CODE_DIGITS = 5;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+    /**
+     * Create (or truncate) the results file, and write the header line
+     *
+     * @param path where to write the results
+     * @throws IOException if the file can't be opened
+     */
+    ResultWriter(final Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer.put(HEADER).put(LINE_SEPARATOR);
+    }
+
+    /**
+     * Write the result for a valid zip code
+     *
+     * @param zip   the zip code, as an int
+     * @param slcsp its SLCSP, or {@link SlcspIndex#NO_SLCSP}
+     */
+    void write(final int zip, final long slcsp) throws IOException {
+        ensureRemaining(ZIP_CODE_DIGITS + MAX_LINE_TAIL_BYTES);
+        Rates.putDigits(buffer, zip, ZIP_CODE_DIGITS);
+        putTail(slcsp);
+    }
+
+    /**
+     * Write the result for a zip code given as text, echoing the text as it is (it need not be a valid zip code)
+     *
+     * @param zipCode the zip code, as given in the input
+     * @param slcsp   its SLCSP, or {@link SlcspIndex#NO_SLCSP}
+     */
+    void write(final String zipCode, final long slcsp) throws IOException {
+        final int zip = ZipCodeSet.parseZip(zipCode);
+        if (zip >= 0) {
+            write(zip, slcsp);
+            return;
+        }
+        final byte[] bytes = zipCode.getBytes(StandardCharsets.UTF_8);
+        putEchoed(ByteBuffer.wrap(bytes), 0, bytes.length);
+        ensureRemaining(MAX_LINE_TAIL_BYTES);
+        putTail(slcsp);
+    }
+
+    /**
+     * Write the result for a zip code given as a range of bytes, echoing the bytes as they are
+     *
+     * @param source the buffer holding the zip code, as given in the input
+     * @param start  the index of the first byte of the zip code
+     * @param end    the index just past the last byte of the zip code
+     * @param slcsp  its SLCSP, or {@link SlcspIndex#NO_SLCSP}
+     */
+    void write(final ByteBuffer source, final int start, final int end, final long slcsp) throws IOException {
+        putEchoed(source, start, end);
+        ensureRemaining(MAX_LINE_TAIL_BYTES);
+        putTail(slcsp);
+    }
+
+    /**
+     * Write out whatever is buffered, and close the file
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void putEchoed(final ByteBuffer source, final int start, final int end) throws IOException {
+        for (int i = start; i < end; i++) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.put(source.get(i));
+        }
+    }
+
+    private void putTail(final long slcsp) {
+        buffer.put((byte) ',');
+        if (slcsp != SlcspIndex.NO_SLCSP) {
+            Rates.putTo(buffer, slcsp);
+        }
+        buffer.put(LINE_SEPARATOR);
+    }
+
+    private void ensureRemaining(final int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,71 @@
+package com.adhoc.slcsp;
+
+import java.util.Arrays;
+
+/**
+ * Tracks the two lowest distinct plan costs seen so far for each rate area, in a pair of primitive arrays indexed by
+ * rate area id.  Costs are in {@link Rates} units.
+ * <p>
+ * Plans that have the same cost as one already seen for the rate area are treated as duplicates, and don't count
+ * towards the second lowest cost.
+ */
+final class SecondLowestCostTable implements PlansCsvScanner.SilverPlanHandler {
+
+    /**
+     * Marks a slot that hasn't been filled yet; higher than any real cost
+     */
+    private static final long NONE = Long.MAX_VALUE;
+
+    private final long[] lowest = new long[RateAreaIds.ID_SPACE];
+    private final long[] secondLowest = new long[RateAreaIds.ID_SPACE];
+
+    SecondLowestCostTable() {
+        Arrays.fill(lowest, NONE);
+        Arrays.fill(secondLowest, NONE);
+    }
+
+    /**
+     * Take account of another plan cost for the given rate area
+     */
+    void add(final int rateAreaId, final long planCost) {
+        if (planCost < lowest[rateAreaId]) {
+            secondLowest[rateAreaId] = lowest[rateAreaId];
+            lowest[rateAreaId] = planCost;
+        } else if (planCost > lowest[rateAreaId] && planCost < secondLowest[rateAreaId]) {
+            secondLowest[rateAreaId] = planCost;
+        }
+    }
+
+    @Override
+    public void onSilverPlan(final int rateAreaId, final long planCost) {
+        add(rateAreaId, planCost);
+    }
+
+    /**
+     * Take account of all the plan costs seen by another table
+     */
+    void addAll(final SecondLowestCostTable other) {
+        for (int rateAreaId = 0; rateAreaId < RateAreaIds.ID_SPACE; rateAreaId++) {
+            if (other.lowest[rateAreaId] != NONE) {
+                add(rateAreaId, other.lowest[rateAreaId]);
+            }
+            if (other.secondLowest[rateAreaId] != NONE) {
+                add(rateAreaId, other.secondLowest[rateAreaId]);
+            }
+        }
+    }
+
+    /**
+     * Get the second lowest distinct plan cost of every rate area
+     *
+     * @return a table indexed by rate area id.  The value is {@link Rates#NO_RATE} for any rate area with fewer than
+     * two distinct costs.
+     */
+    long[] toSecondLowestCosts() {
+        final long[] secondLowestCosts = new long[RateAreaIds.ID_SPACE];
+        for (int rateAreaId = 0; rateAreaId < RateAreaIds.ID_SPACE; rateAreaId++) {
+            secondLowestCosts[rateAreaId] = secondLowest[rateAreaId] == NONE ? Rates.NO_RATE : secondLowest[rateAreaId];
+        }
+        return secondLowestCosts;
+    }
+}
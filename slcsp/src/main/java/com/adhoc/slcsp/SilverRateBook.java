@@ -0,0 +1,209 @@
+package com.adhoc.slcsp;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps every Silver plan rate in plans.csv, so that the SLCSP of a rate area can be worked out again when plans are
+ * added or removed, without reading plans.csv again.  Costs are in {@link Rates} units.
+ * <p>
+ * The rates of each rate area are held in a sorted primitive array, indexed by rate area id, with one entry per plan
+ * (so plans with the same rate each have an entry, and removing one of them leaves the others).
+ * <p>
+ * The book is not thread-safe: it is meant to be kept and changed by a single thread.
+ */
+final class SilverRateBook {
+
+    private static final long[] NO_RATES = new long[0];
+
+    private final long[][] rates;
+
+    private SilverRateBook(final long[][] rates) {
+        this.rates = rates;
+    }
+
+    /**
+     * Read the Silver plan rates in the given plans.csv file, which must be the one an index was built from.  The
+     * book can then be used to apply deltas to that index.
+     *
+     * @param plansFile        the plans.csv file to read in
+     * @param plansFingerprint the size and last modified time plans.csv had when the index was built from it
+     * @return the book
+     * @throws IllegalStateException if the file can't be read, or isn't the one the index was built from (because it
+     *                               has changed since, or the index was loaded from a snapshot without it)
+     */
+    static SilverRateBook load(final Path plansFile, final DatasetSnapshot.SourceFingerprint plansFingerprint) {
+        checkUnchanged(plansFile, plansFingerprint);
+        final int[] rateCounts = new int[RateAreaIds.ID_SPACE];
+        final long[][] rates = new long[RateAreaIds.ID_SPACE][];
+        try {
+            // Chunks of the file are collected in parallel, and the results are then concatenated and sorted
+            for (RateCollector partial : new PlansCsvScanner(plansFile).scanInParallel(RateCollector::new,
+                    StageMetrics.NONE)) {
+                for (int rateAreaId = 0; rateAreaId < RateAreaIds.ID_SPACE; rateAreaId++) {
+                    final int partialCount = partial.counts[rateAreaId];
+                    if (partialCount > 0) {
+                        final int count = rateCounts[rateAreaId];
+                        rates[rateAreaId] = rates[rateAreaId] == null
+                                ? new long[partialCount]
+                                : Arrays.copyOf(rates[rateAreaId], count + partialCount);
+                        System.arraycopy(partial.rates[rateAreaId], 0, rates[rateAreaId], count, partialCount);
+                        rateCounts[rateAreaId] = count + partialCount;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Problem loading rateArea file ('" + plansFile + "'): " + e);
+        }
+        for (int rateAreaId = 0; rateAreaId < RateAreaIds.ID_SPACE; rateAreaId++) {
+            if (rates[rateAreaId] == null) {
+                rates[rateAreaId] = NO_RATES;
+            } else {
+                Arrays.sort(rates[rateAreaId]);
+            }
+        }
+        // plans.csv may have been written while it was being read
+        checkUnchanged(plansFile, plansFingerprint);
+        return new SilverRateBook(rates);
+    }
+
+    private static void checkUnchanged(final Path plansFile,
+                                       final DatasetSnapshot.SourceFingerprint plansFingerprint) {
+        final DatasetSnapshot.SourceFingerprint fingerprint;
+        try {
+            fingerprint = DatasetSnapshot.SourceFingerprint.of(plansFile);
+        } catch (IOException e) {
+            throw new IllegalStateException("Problem loading rateArea file ('" + plansFile
+                    + "'): the plans the index was built from are needed to apply a delta: " + e);
+        }
+        if (!fingerprint.equals(plansFingerprint)) {
+            throw new IllegalStateException("Problem loading rateArea file ('" + plansFile
+                    + "'): it has changed since the index was built from it, so reload the plans before applying"
+                    + " a delta");
+        }
+    }
+
+    /**
+     * Apply the changes in a plan delta file to the book, and to an index built from the same plans.csv.  Only the
+     * rate areas the delta touches are looked at again.
+     * <p>
+     * The delta is applied in full or not at all: if it can't be read, or it removes a plan that isn't there, the
+     * book is left as it was.
+     *
+     * @param slcspIndex the index to apply the delta to.  It is not changed.
+     * @param deltaFile  the plan delta file; see {@link PlansCsvScanner#scanDelta}
+     * @return a new index, with the delta applied
+     * @throws IllegalStateException if the delta can't be applied
+     */
+    SlcspIndex apply(final SlcspIndex slcspIndex, final Path deltaFile) {
+        final ChangedRates changedRates = new ChangedRates(deltaFile);
+        final long planRowChange;
+        try {
+            planRowChange = new PlansCsvScanner(deltaFile).scanDelta(changedRates);
+        } catch (IOException e) {
+            throw new IllegalStateException("Problem loading plan delta file ('" + deltaFile + "'): " + e);
+        }
+
+        // Every change has been applied to a copy, so the changed rate areas can now be swapped in
+        final Map<Integer, Long> rateAreaSlcsps = new HashMap<>();
+        for (Map.Entry<Integer, long[]> changed : changedRates.rates.entrySet()) {
+            final long[] newRates = Arrays.copyOf(changed.getValue(), changedRates.counts.get(changed.getKey()));
+            rates[changed.getKey()] = newRates;
+            rateAreaSlcsps.put(changed.getKey(), getSecondLowestDistinctRate(newRates));
+        }
+        return slcspIndex.withRateAreaSlcsps(rateAreaSlcsps, planRowChange,
+                slcspIndex.getDatasetVersion() + "+" + deltaFile.getFileName());
+    }
+
+    /**
+     * Get the second lowest distinct rate of a sorted array of rates
+     *
+     * @return the rate, or {@link Rates#NO_RATE} if there are fewer than two distinct rates
+     */
+    private static long getSecondLowestDistinctRate(final long[] sortedRates) {
+        for (int i = 1; i < sortedRates.length; i++) {
+            if (sortedRates[i] != sortedRates[0]) {
+                return sortedRates[i];
+            }
+        }
+        return Rates.NO_RATE;
+    }
+
+    /**
+     * Collects the Silver plan rates in a single chunk of plans.csv, in the order they're seen
+     */
+    private static final class RateCollector implements PlansCsvScanner.SilverPlanHandler {
+        private final int[] counts = new int[RateAreaIds.ID_SPACE];
+        private final long[][] rates = new long[RateAreaIds.ID_SPACE][];
+
+        @Override
+        public void onSilverPlan(final int rateAreaId, final long planCost) {
+            final int count = counts[rateAreaId];
+            if (rates[rateAreaId] == null) {
+                rates[rateAreaId] = new long[8];
+            } else if (count == rates[rateAreaId].length) {
+                rates[rateAreaId] = Arrays.copyOf(rates[rateAreaId], count * 2);
+            }
+            rates[rateAreaId][count] = planCost;
+            counts[rateAreaId] = count + 1;
+        }
+    }
+
+    /**
+     * The rates of the rate areas changed by a plan delta, each changed in a sorted copy of the book's array (which
+     * may have spare room at the end)
+     */
+    private final class ChangedRates implements PlansCsvScanner.SilverPlanChangeHandler {
+        private final Path deltaFile;
+        private final Map<Integer, long[]> rates = new HashMap<>();
+        private final Map<Integer, Integer> counts = new HashMap<>();
+
+        ChangedRates(final Path deltaFile) {
+            this.deltaFile = deltaFile;
+        }
+
+        @Override
+        public void onSilverPlanAdded(final int rateAreaId, final long planCost) {
+            long[] changed = getChangedRates(rateAreaId);
+            final int count = counts.get(rateAreaId);
+            if (count == changed.length) {
+                changed = Arrays.copyOf(changed, Math.max(8, count * 2));
+                rates.put(rateAreaId, changed);
+            }
+            int insertAt = Arrays.binarySearch(changed, 0, count, planCost);
+            if (insertAt < 0) {
+                insertAt = -insertAt - 1;
+            }
+            System.arraycopy(changed, insertAt, changed, insertAt + 1, count - insertAt);
+            changed[insertAt] = planCost;
+            counts.put(rateAreaId, count + 1);
+        }
+
+        @Override
+        public void onSilverPlanRemoved(final int rateAreaId, final long planCost) {
+            final long[] changed = getChangedRates(rateAreaId);
+            final int count = counts.get(rateAreaId);
+            final int removeAt = Arrays.binarySearch(changed, 0, count, planCost);
+            if (removeAt < 0) {
+                throw new IllegalStateException("Problem loading plan delta file ('" + deltaFile
+                        + "'): it removes a Silver plan at " + SlcspIndex.formatRate(planCost)
+                        + " that isn't in its rate area");
+            }
+            System.arraycopy(changed, removeAt + 1, changed, removeAt, count - removeAt - 1);
+            counts.put(rateAreaId, count - 1);
+        }
+
+        private long[] getChangedRates(final int rateAreaId) {
+            long[] changed = rates.get(rateAreaId);
+            if (changed == null) {
+                changed = SilverRateBook.this.rates[rateAreaId].clone();
+                rates.put(rateAreaId, changed);
+                counts.put(rateAreaId, changed.length);
+            }
+            return changed;
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package com.adhoc.slcsp;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Find the Slcsp for a set of zip codes in a given file.
+ * <p>
+ * This class uses data found in 3 input files and writes the results to the same directory,
+ * overwriting one of the input files.  The location of that directory is specified by a program argument.
+ * <p>
+ * A full description of the expected functionality can be found here: https://github.com/adhocteam/homework/tree/master/slcsp
+ * <p>
+ * The process is initiated by calling the process() method in this class
+ */
+
+public class SlcspFinder {
+
+    private static final String COMPILE_OPTION = "--compile";
+
+    private static final String SERVE_OPTION = "--serve";
+
+    private static final String STREAM_OPTION = "--stream";
+
+    private static final String WATCH_OPTION = "--watch";
+
+    private static final int DEFAULT_PORT = 8080;
+
+    /**
+     * Required single argument: file location
+     * <p>
+     * Alternatively, "--compile", the file location, and optionally a dataset version label, to compile plans.csv
+     * and zips.csv into a snapshot that later runs will load instead
+     * <p>
+     * Or, "--serve", the file location, and optionally a port, to answer lookups over HTTP until the process is stopped.
+     * A final "--watch" also reloads the data whenever plans.csv or zips.csv changes.
+     * <p>
+     * Or, "--stream" and the file location, to process an input file too large to be held in memory
+     *
+     * @param args command line arguments.  A single argument is expected, namely, the directory location of the input files
+     */
+    public static void main(String args[]) {
+        if (args == null || args.length < 1) {
+            throw new IllegalStateException("The location of the data must be specified as the first argument.");
+        }
+        SlcspFinder slcspFinder = new SlcspFinder();
+
+        if (COMPILE_OPTION.equals(args[0]) || SERVE_OPTION.equals(args[0]) || STREAM_OPTION.equals(args[0])) {
+            if (args.length < 2) {
+                throw new IllegalStateException("The location of the data must be specified after " + args[0]);
+            }
+            if (COMPILE_OPTION.equals(args[0])) {
+                slcspFinder.compile(args[1], args.length > 2 ? args[2] : Instant.now().toString());
+            } else if (SERVE_OPTION.equals(args[0])) {
+                final boolean watch = WATCH_OPTION.equals(args[args.length - 1]);
+                final int argsBeforeWatch = watch ? args.length - 1 : args.length;
+                slcspFinder.serve(args[1], argsBeforeWatch > 2 ? Integer.parseInt(args[2]) : DEFAULT_PORT, watch);
+            } else {
+                slcspFinder.processStreaming(args[1]);
+            }
+        } else {
+            slcspFinder.process(args[0]);
+        }
+    }
+
+
+    /**
+     * Find the SLCSP.  Write out the results to the same file as the original input was in.
+     *
+     * @param baseDir the location for the input files
+     * @return the wall time, throughput and allocations of each stage of the run
+     */
+    public ProcessReport process(String baseDir) {
+
+        String baseDirWithFinalSeparator = baseDir.endsWith(File.separator) ? baseDir : baseDir + File.separator;
+
+        long start = System.nanoTime();
+        String inputAndOutputFileName = "slcsp.csv";
+        final List<StageReport> stageReports = new ArrayList<>();
+
+        /*
+         * 1. Read in the zipcodes we are tasked to find values for, into a List
+         *      - Data in slcsp.csv
+         */
+        final String inputOutputFileSpec = baseDirWithFinalSeparator + inputAndOutputFileName;
+        final StageMetrics readInputStage = StageMetrics.start(ProcessReport.READ_INPUT);
+        final List<String> slcspInputList = buildInputList(inputOutputFileSpec, readInputStage);
+        readInputStage.stop();
+        stageReports.add(readInputStage.toReport());
+
+
+        /*
+         * 2., 3. and 4. Build an index of the SLCSP of each zip code: marshal the rate areas to SLCSP values,
+         * and the zip codes to rate areas, and then link the zip codes to the SLCSPs
+         *      - Data in plans.csv (contains plans-details and rate area codes) and zips.csv (contains rate area
+         *        codes and zip codes), or in a snapshot compiled from them, if plans.csv and zips.csv haven't
+         *        changed since it was compiled
+         *      - Filter out values we don't care about (e.g., anything that's not the slcsp, zip codes not in the
+         *        input file, rate areas with no SLCSP, and then zip codes with more than one rate area)
+         */
+        final SlcspIndex slcspIndex = SlcspIndex.load(Paths.get(baseDirWithFinalSeparator),
+                ZipCodeSet.of(slcspInputList), stageReports);
+
+
+        /*
+         * 5. Loop through the list of input zipcodes and write out the results, using the index
+         */
+        final StageMetrics writeResultsStage = StageMetrics.start(ProcessReport.WRITE_RESULTS);
+        writeResults(inputOutputFileSpec, slcspInputList, slcspIndex, writeResultsStage);
+        writeResultsStage.stop();
+        stageReports.add(writeResultsStage.toReport());
+
+
+        final ProcessReport report = new ProcessReport(stageReports, System.nanoTime() - start);
+        renderMessage("\nComplete in " + TimeUnit.NANOSECONDS.toMillis(report.getTotalNanos())
+                + "ms: Results written to: " + baseDirWithFinalSeparator + inputAndOutputFileName + "\n" + report);
+        return report;
+    }
+
+
+    /**
+     * Find the SLCSP, as process() does, for an input file too large to be read into memory.  The input is streamed
+     * through one row at a time, and the results are written out in bounded chunks as they're found, so memory use
+     * stays flat however many rows there are.
+     * <p>
+     * Since the input can't be held in memory, the results are written to a temporary file alongside it, which is
+     * then moved over the input file.  The index is built for every zip code, rather than just those in the input,
+     * since finding out which zip codes are in the input would take a pass of its own.
+     *
+     * @param baseDir the location for the input files
+     */
+    public void processStreaming(String baseDir) {
+
+        String baseDirWithFinalSeparator = baseDir.endsWith(File.separator) ? baseDir : baseDir + File.separator;
+
+        long start = System.currentTimeMillis();
+        String inputAndOutputFileName = "slcsp.csv";
+
+        final SlcspIndex slcspIndex = SlcspIndex.load(Paths.get(baseDirWithFinalSeparator));
+
+        final Path inputOutputFile = Paths.get(baseDirWithFinalSeparator + inputAndOutputFileName);
+        final Path tempFile = inputOutputFile.resolveSibling(inputAndOutputFileName + ".tmp");
+        try {
+            streamResults(inputOutputFile, tempFile, slcspIndex);
+            Files.move(tempFile, inputOutputFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IllegalStateException("Problem writing file ('" + inputOutputFile + "'): " + e);
+        } finally {
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException e) {
+                renderMessage("Unable to delete temporary file ('" + tempFile + "'): " + e);
+            }
+        }
+
+        renderMessage("\nComplete in " + (System.currentTimeMillis() - start) + "ms: Results streamed to: "
+                + baseDirWithFinalSeparator + inputAndOutputFileName + "\n");
+    }
+
+
+    /**
+     * Compile plans.csv and zips.csv into a snapshot of the reference data, in the same directory.  Subsequent calls
+     * to process() will load the snapshot instead of parsing the CSV files, for as long as those files don't change.
+     * <p>
+     * An index of zips.csv is written alongside, so that if only plans.csv changes, runs asking for a few zip codes
+     * can still find their rows in zips.csv without reading all of it.
+     *
+     * @param baseDir        the location for the input files
+     * @param datasetVersion a label identifying this version of the reference data
+     */
+    public void compile(String baseDir, String datasetVersion) {
+
+        String baseDirWithFinalSeparator = baseDir.endsWith(File.separator) ? baseDir : baseDir + File.separator;
+
+        long start = System.currentTimeMillis();
+
+        // Keep every zip code, since we don't yet know which will be asked for
+        final Path plansFile = Paths.get(baseDirWithFinalSeparator + SlcspIndex.PLANS_FILE_NAME);
+        final Path zipsFile = Paths.get(baseDirWithFinalSeparator + SlcspIndex.ZIPS_FILE_NAME);
+        final SlcspIndex slcspIndex = SlcspIndex.fromFiles(plansFile, zipsFile);
+
+        final String snapshotFileSpec = baseDirWithFinalSeparator + DatasetSnapshot.FILE_NAME;
+        try {
+            slcspIndex.writeSnapshot(Paths.get(snapshotFileSpec), datasetVersion);
+        } catch (IOException e) {
+            throw new IllegalStateException("Problem writing file ('" + snapshotFileSpec + "'): " + e);
+        }
+
+        // The zip code index outlives the snapshot when only plans.csv changes
+        final Path zipsIndexFile;
+        try {
+            zipsIndexFile = ZipsCsvIndex.write(zipsFile);
+        } catch (IOException e) {
+            throw new IllegalStateException("Problem writing the index of file ('" + zipsFile + "'): " + e);
+        }
+
+        renderMessage("\nCompiled in " + (System.currentTimeMillis() - start) + "ms: Snapshot '" + datasetVersion
+                + "' written to: " + snapshotFileSpec + ", zip code index to: " + zipsIndexFile + "\n");
+    }
+
+
+    /**
+     * Build the SLCSP index for every zip code once, and then answer lookups against it over HTTP on the loopback
+     * interface, until the process is stopped.  The batch flow, process(), is unaffected.
+     * <p>
+     * The index is also registered as an MBean, {@value SlcspIndexMonitor#OBJECT_NAME}, for monitoring, and for
+     * reloading the reference data without a restart.
+     *
+     * @param baseDir the location for the input files (or a snapshot compiled from them)
+     * @param port    the port to listen on
+     */
+    public void serve(String baseDir, int port) {
+        serve(baseDir, port, false);
+    }
+
+
+    /**
+     * As {@link #serve(String, int)}, optionally watching the input files and reloading the index (just the side
+     * whose file changed) whenever plans.csv or zips.csv is written or replaced
+     *
+     * @param baseDir the location for the input files (or a snapshot compiled from them)
+     * @param port    the port to listen on
+     * @param watch   whether to watch the input files for changes
+     */
+    public void serve(String baseDir, int port, boolean watch) {
+
+        String baseDirWithFinalSeparator = baseDir.endsWith(File.separator) ? baseDir : baseDir + File.separator;
+
+        long start = System.currentTimeMillis();
+
+        final ReloadableSlcspIndex slcspIndex = ReloadableSlcspIndex.load(Paths.get(baseDirWithFinalSeparator));
+
+        final SlcspServer server;
+        try {
+            server = new SlcspServer(slcspIndex::current, port);
+        } catch (IOException e) {
+            throw new IllegalStateException("Problem listening on port " + port + ": " + e);
+        }
+        server.start();
+        final DataDirectoryWatcher watcher;
+        if (watch) {
+            try {
+                watcher = new DataDirectoryWatcher(slcspIndex, Paths.get(baseDirWithFinalSeparator),
+                        DataDirectoryWatcher.DEFAULT_QUIET_MILLIS, this::renderMessage);
+            } catch (IOException e) {
+                server.stop();
+                throw new IllegalStateException("Problem watching directory ('" + baseDir + "'): " + e);
+            }
+            watcher.start();
+        } else {
+            watcher = null;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (watcher != null) {
+                watcher.close();
+            }
+            server.stop();
+            slcspIndex.close();
+        }));
+        SlcspIndexMonitor.register(slcspIndex);
+
+        renderMessage("\nReady in " + (System.currentTimeMillis() - start) + "ms: Answering lookups for '"
+                + slcspIndex.current().getDatasetVersion() + "' at http://"
+                + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort() + "/slcsp\n");
+    }
+
+
+    /**
+     * Read in the input file with zip codes.  It's these zip codes that we want to find the SLCSP, if any
+     *
+     * @param fileSpec the full filespec of the input file to read in
+     * @return an ordered List of the input strings (zip codes)
+     */
+    List<String> buildInputList(final String fileSpec) {
+        return buildInputList(fileSpec, StageMetrics.NONE);
+    }
+
+    /**
+     * As {@link #buildInputList(String)}, adding the rows and bytes read to the given stage
+     */
+    List<String> buildInputList(final String fileSpec, final StageMetrics metrics) {
+        final List<String> slcspList = new ArrayList<>();
+        try (
+                final BufferedReader br = new BufferedReader(new FileReader(fileSpec))
+        ) {
+            br.readLine();   // skip the first header line
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.endsWith(",")) {
+                    line = line.substring(0, line.length() - 1);
+                }
+                slcspList.add(line);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Problem loading file ('" + fileSpec + "'): " + e);
+        }
+        metrics.setDataset(fileSpec);
+        metrics.addRows(slcspList.size());
+        metrics.addBytes(new File(fileSpec).length());
+        return slcspList;
+    }
+
+    /**
+     * Write the output to the specified location.  The output must be written in the same order
+     *
+     * @param fileSpec       the full filespec of where to write the results
+     * @param slcspInputList The ordered input list.
+     * @param slcspIndex     the index of SLCSP values.  It may or may not have a value for all the zip codes that are
+     *                       in the given slcspInputList.
+     */
+    void writeResults(final String fileSpec, final List<String> slcspInputList,
+                      final SlcspIndex slcspIndex) {
+        writeResults(fileSpec, slcspInputList, slcspIndex, StageMetrics.NONE);
+    }
+
+    /**
+     * As {@link #writeResults(String, List, SlcspIndex)}, adding the rows and bytes written to the given stage
+     */
+    void writeResults(final String fileSpec, final List<String> slcspInputList,
+                      final SlcspIndex slcspIndex, final StageMetrics metrics) {
+        try (
+                final ResultWriter resultWriter = new ResultWriter(Paths.get(fileSpec))
+        ) {
+            for (String zipCode : slcspInputList) {
+                resultWriter.write(zipCode, slcspIndex.lookup(zipCode));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Problem writing file ('" + fileSpec + "'): " + e);
+        }
+        metrics.setDataset(fileSpec);
+        metrics.addRows(slcspInputList.size());
+        metrics.addBytes(new File(fileSpec).length());
+    }
+
+
+    /**
+     * Stream the zip codes in the input file through the index, writing a result line for each, in the same order and
+     * layout as writeResults()
+     *
+     * @param inputFile  the input file of zip codes
+     * @param resultFile where to write the results
+     * @param slcspIndex the index of SLCSP values
+     */
+    private void streamResults(final Path inputFile, final Path resultFile,
+                               final SlcspIndex slcspIndex) throws IOException {
+        try (
+                final ResultWriter resultWriter = new ResultWriter(resultFile)
+        ) {
+            // Blank lines are kept, and answered with an empty result line, as writeResults() does
+            new MappedCsvFile(inputFile).forEachDataLine((buffer, start, end) -> {
+                final int zipEnd = end > start && buffer.get(end - 1) == ',' ? end - 1 : end;
+                final int zip = ZipCodeSet.parseZip(buffer, start, zipEnd);
+                try {
+                    if (zip >= 0) {
+                        resultWriter.write(zip, slcspIndex.lookup(zip));
+                    } else {
+                        resultWriter.write(buffer, start, zipEnd, SlcspIndex.NO_SLCSP);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+
+    private void renderMessage(final String msg) {
+        // swap out for log4j, or some such logging mechanism....
+        System.out.println(msg);
+    }
+
+
+}
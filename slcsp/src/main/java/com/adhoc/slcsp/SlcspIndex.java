@@ -0,0 +1,863 @@
+package com.adhoc.slcsp;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An immutable, thread-safe index of the Second Lowest Cost Silver Plan (SLCSP) of every zip code, built once from
+ * the plans and zips reference data and then queried in-process.
+ * <p>
+ * Rates are returned as primitive longs in fixed-point units ({@link #RATE_UNITS_PER_DOLLAR} to the dollar), with
+ * {@link #NO_SLCSP} for a zip code whose SLCSP can't be determined: one that isn't in the reference data, is in more
+ * than one rate area, or whose rate area has fewer than two distinct Silver plan rates.  Use {@link #formatRate(long)}
+ * to render a rate as text.
+ * <p>
+ * A lookup is a single array load, so lookups are cheap enough to make from any number of threads.  The only state
+ * that changes once the index is built is a pair of lookup counters, which are striped across threads so that they
+ * don't become a point of contention.
+ * <p>
+ * An index built by {@link #fromFiles(Path, Path, int)} also keeps the lowest few rates of every metal level in every
+ * rate area, so that other benchmark plans (the lowest Bronze plan, the second lowest Gold plan...) of a zip code can
+ * be looked up in the same way, from the same pass over plans.csv.
+ * <p>
+ * The index also describes itself, for monitoring: the size of the reference data it was built from, how its zip
+ * codes break down, how long it took to load, and how many lookups it has answered.
+ */
+public final class SlcspIndex {
+
+    /**
+     * Returned by the lookup methods for a zip code with no SLCSP
+     */
+    public static final long NO_SLCSP = Rates.NO_RATE;
+
+    /**
+     * The number of rate units in one dollar
+     */
+    public static final long RATE_UNITS_PER_DOLLAR = Rates.UNITS_PER_DOLLAR;
+
+    static final String PLANS_FILE_NAME = "plans.csv";
+
+    static final String ZIPS_FILE_NAME = "zips.csv";
+
+    /**
+     * The rank of the SLCSP among the distinct Silver plan rates of a rate area
+     */
+    private static final int SLCSP_RANK = 2;
+
+    private final String datasetVersion;
+
+    /**
+     * The SLCSP of each rate area, indexed by rate area id
+     */
+    private final long[] rateAreaToSlcsp;
+
+    /**
+     * The rate area(s) of each zip code.  Never modified once the index is built.
+     */
+    private final ZipRateAreaTable zipRateAreaTable;
+
+    /**
+     * The SLCSP of each zip code, indexed by numeric zip code
+     */
+    private final long[] zipToSlcsp;
+
+    /**
+     * The lowest few rates of every metal level in every rate area, or null if the index only keeps the SLCSP
+     */
+    private final RankedPlanRates rankedPlanRates;
+
+    /**
+     * True if the zip code data covers every zip code in zips.csv, rather than just those of interest to one batch
+     */
+    private final boolean complete;
+
+    /**
+     * The plans.csv and zips.csv the reference data came from, as they were before they were read
+     */
+    private final DatasetSnapshot.SourceFingerprint plansFingerprint;
+    private final DatasetSnapshot.SourceFingerprint zipsFingerprint;
+
+    /**
+     * True if the reference data was read from a compiled snapshot, rather than from plans.csv and zips.csv
+     */
+    private final boolean fromSnapshot;
+
+    private final long planRows;
+    private final long zipRows;
+    private final int resolvedZipCount;
+    private final int ambiguousZipCount;
+    private final int unpricedZipCount;
+    private final long loadMillis;
+
+    private final LongAdder lookupCount = new LongAdder();
+    private final LongAdder lookupsWithoutSlcspCount = new LongAdder();
+
+    /**
+     * @param zipToSlcsp      the SLCSP of each zip code, as linked from the other two tables
+     * @param rankedPlanRates the ranked rates of every metal level, or null to keep only the SLCSP
+     * @param planRows        the number of data rows in plans.csv
+     * @param zipRows         the number of data rows in zips.csv
+     * @param loadStartNanos  when loading the reference data started, from System.nanoTime()
+     */
+    private SlcspIndex(final String datasetVersion, final long[] rateAreaToSlcsp,
+                       final ZipRateAreaTable zipRateAreaTable, final long[] zipToSlcsp,
+                       final RankedPlanRates rankedPlanRates, final boolean complete,
+                       final DatasetSnapshot.SourceFingerprint plansFingerprint,
+                       final DatasetSnapshot.SourceFingerprint zipsFingerprint, final boolean fromSnapshot,
+                       final long planRows, final long zipRows, final long loadStartNanos) {
+        this.datasetVersion = datasetVersion;
+        this.rateAreaToSlcsp = rateAreaToSlcsp;
+        this.zipRateAreaTable = zipRateAreaTable;
+        this.zipToSlcsp = zipToSlcsp;
+        this.rankedPlanRates = rankedPlanRates;
+        this.complete = complete;
+        this.plansFingerprint = plansFingerprint;
+        this.zipsFingerprint = zipsFingerprint;
+        this.fromSnapshot = fromSnapshot;
+        this.planRows = planRows;
+        this.zipRows = zipRows;
+
+        int resolved = 0;
+        int ambiguous = 0;
+        int unpriced = 0;
+        for (int zip = 0; zip < zipToSlcsp.length; zip++) {
+            if (zipToSlcsp[zip] != NO_SLCSP) {
+                resolved++;
+            } else if (zipRateAreaTable.get(zip) == ZipRateAreaTable.AMBIGUOUS && rateAreasWithSlcsp(zip) > 1) {
+                ambiguous++;
+            } else if (zipRateAreaTable.get(zip) != ZipRateAreaTable.UNKNOWN) {
+                unpriced++;
+            }
+        }
+        this.resolvedZipCount = resolved;
+        this.ambiguousZipCount = ambiguous;
+        this.unpricedZipCount = unpriced;
+        this.loadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loadStartNanos);
+    }
+
+    /**
+     * Build the index from the reduced reference data, linking each zip code to its SLCSP
+     *
+     * @param rankedPlanRates the ranked rates of every metal level, or null to keep only the SLCSP
+     * @param stageReports    receives the measurements of linking the zip codes to their SLCSP
+     */
+    private static SlcspIndex build(final String datasetVersion, final long[] rateAreaToSlcsp,
+                                    final ZipRateAreaTable zipRateAreaTable, final RankedPlanRates rankedPlanRates,
+                                    final boolean complete,
+                                    final DatasetSnapshot.SourceFingerprint plansFingerprint,
+                                    final DatasetSnapshot.SourceFingerprint zipsFingerprint,
+                                    final boolean fromSnapshot, final long planRows, final long zipRows,
+                                    final long loadStartNanos, final List<StageReport> stageReports) {
+        final StageMetrics joinStage = StageMetrics.start(ProcessReport.JOIN);
+        joinStage.setDataset(datasetVersion);
+        final long[] zipToSlcsp = buildFinalZipToSlcspPriceTable(zipRateAreaTable, rateAreaToSlcsp, joinStage);
+        joinStage.stop();
+        stageReports.add(joinStage.toReport());
+        return new SlcspIndex(datasetVersion, rateAreaToSlcsp, zipRateAreaTable, zipToSlcsp, rankedPlanRates,
+                complete, plansFingerprint, zipsFingerprint, fromSnapshot, planRows, zipRows, loadStartNanos);
+    }
+
+    /**
+     * Load the index for the reference data in the given directory: from its compiled snapshot if there is one and
+     * plans.csv and zips.csv haven't changed since it was compiled, otherwise from plans.csv and zips.csv.  A snapshot
+     * that can't be read, or is corrupt, is passed over in the same way as one that is out of date, as long as there
+     * are CSV files to load instead.
+     *
+     * @param dataDir the directory holding plans.csv and zips.csv, and/or a snapshot compiled from them
+     * @return the index
+     * @throws IllegalStateException if the reference data can't be loaded
+     */
+    public static SlcspIndex load(final Path dataDir) {
+        return load(dataDir, ZipCodeSet.all(), new ArrayList<>());
+    }
+
+    /**
+     * As {@link #load(Path)}, but when loading from the CSV files, only keep the data for the given zip codes
+     *
+     * @param stageReports receives the measurements of each stage of the load, in order
+     */
+    static SlcspIndex load(final Path dataDir, final ZipCodeSet zipsOfInterest, final List<StageReport> stageReports) {
+        final Path plansFile = dataDir.resolve(PLANS_FILE_NAME);
+        final Path zipsFile = dataDir.resolve(ZIPS_FILE_NAME);
+        final Path snapshotFile = dataDir.resolve(DatasetSnapshot.FILE_NAME);
+        final long loadStartNanos = System.nanoTime();
+        final DatasetSnapshot snapshot = readSnapshotIfCurrent(snapshotFile, plansFile, zipsFile, stageReports);
+        if (snapshot != null) {
+            return fromSnapshot(snapshot, loadStartNanos, stageReports);
+        }
+        return fromFiles(plansFile, zipsFile, zipsOfInterest, stageReports);
+    }
+
+    /**
+     * Read a data directory's snapshot, if it has one that is current.  Whether it is current is decided from its
+     * header alone, before the rest of it is read.  A snapshot written by another version of the application is
+     * ignored, as if it were out of date.
+     *
+     * @param stageReports receives the measurements of reading the snapshot, if it is read
+     * @return the snapshot, or null if the index should be loaded from plans.csv and zips.csv instead
+     * @throws IllegalStateException if the snapshot can't be read, and there are no CSV files to fall back on
+     */
+    private static DatasetSnapshot readSnapshotIfCurrent(final Path snapshotFile, final Path plansFile,
+                                                         final Path zipsFile, final List<StageReport> stageReports) {
+        if (!Files.exists(snapshotFile)) {
+            return null;
+        }
+        try {
+            if (!DatasetSnapshot.isCurrent(snapshotFile, plansFile, zipsFile)) {
+                return null;
+            }
+            final StageMetrics snapshotStage = StageMetrics.start(ProcessReport.LOAD_SNAPSHOT);
+            final DatasetSnapshot snapshot;
+            try {
+                snapshot = DatasetSnapshot.read(snapshotFile, snapshotStage);
+            } finally {
+                snapshotStage.stop();
+            }
+            stageReports.add(snapshotStage.toReport());
+            return snapshot;
+        } catch (IOException | IllegalStateException e) {
+            if (Files.exists(plansFile) && Files.exists(zipsFile)) {
+                return null;
+            }
+            throw new IllegalStateException("Problem loading file ('" + snapshotFile + "'): " + e);
+        }
+    }
+
+    /**
+     * Build the index from a plans.csv and a zips.csv file
+     *
+     * @param plansFile the plans.csv file
+     * @param zipsFile  the zips.csv file
+     * @return the index
+     * @throws IllegalStateException if either file can't be loaded
+     */
+    public static SlcspIndex fromFiles(final Path plansFile, final Path zipsFile) {
+        return fromFiles(plansFile, zipsFile, ZipCodeSet.all(), 0, new ArrayList<>());
+    }
+
+    /**
+     * As {@link #fromFiles(Path, Path)}, also keeping the lowest few rates of every metal level in every rate area, for
+     * {@link #lookup(int, MetalLevel, int)}.  plans.csv is still read only once, but every metal level is reduced
+     * rather than just Silver, so this takes longer and the index takes up more memory.
+     *
+     * @param maxRank the highest rank that will be looked up, from 2 to {@link RankedPlanRates#MAX_RANK}
+     * @throws IllegalArgumentException if the maximum rank is out of range
+     */
+    public static SlcspIndex fromFiles(final Path plansFile, final Path zipsFile, final int maxRank) {
+        if (maxRank < SLCSP_RANK || maxRank > RankedPlanRates.MAX_RANK) {
+            throw new IllegalArgumentException("The maximum rank must be between " + SLCSP_RANK + " and "
+                    + RankedPlanRates.MAX_RANK + ": " + maxRank);
+        }
+        return fromFiles(plansFile, zipsFile, ZipCodeSet.all(), maxRank, new ArrayList<>());
+    }
+
+    /**
+     * As {@link #fromFiles(Path, Path)}, but only keep the data for the given zip codes
+     *
+     * @param stageReports receives the measurements of each stage of the load, in order
+     */
+    static SlcspIndex fromFiles(final Path plansFile, final Path zipsFile, final ZipCodeSet zipsOfInterest,
+                                final List<StageReport> stageReports) {
+        return fromFiles(plansFile, zipsFile, zipsOfInterest, 0, stageReports);
+    }
+
+    /**
+     * @param maxRank the highest rank of the ranked rates to keep, or 0 to keep only the SLCSP
+     */
+    private static SlcspIndex fromFiles(final Path plansFile, final Path zipsFile, final ZipCodeSet zipsOfInterest,
+                                        final int maxRank, final List<StageReport> stageReports) {
+        final long loadStartNanos = System.nanoTime();
+        // The files are fingerprinted before they are read, so that one replaced while it's being read doesn't
+        // look as if it's the one the index was built from
+        final DatasetSnapshot.SourceFingerprint plansFingerprint = fingerprint(plansFile);
+        final DatasetSnapshot.SourceFingerprint zipsFingerprint = fingerprint(zipsFile);
+        // plans.csv and zips.csv don't depend on each other, so they are loaded at the same time: plans.csv in the
+        // background, and zips.csv on this thread.
+        final CompletableFuture<StageResult<ReducedPlans>> reducedPlansFuture = CompletableFuture.supplyAsync(() -> {
+            final StageMetrics plansStage = StageMetrics.start(ProcessReport.REDUCE_PLANS);
+            final ReducedPlans reducedPlans = reducePlans(plansFile, maxRank, plansStage);
+            plansStage.stop();
+            return new StageResult<>(reducedPlans, plansStage);
+        });
+        final StageMetrics zipsStage = StageMetrics.start(ProcessReport.GROUP_ZIPS);
+        final ZipRateAreaTable zipRateAreaTable = buildZipRateAreaTable(zipsFile, zipsOfInterest, zipsStage);
+        zipsStage.stop();
+        final StageResult<ReducedPlans> reducedPlans = awaitResult(reducedPlansFuture);
+
+        final StageReport plansReport = reducedPlans.metrics.toReport();
+        final StageReport zipsReport = zipsStage.toReport();
+        stageReports.add(plansReport);
+        stageReports.add(zipsReport);
+        return build(sourceVersion(plansFingerprint, zipsFingerprint), reducedPlans.result.rateAreaToSlcsp,
+                zipRateAreaTable, reducedPlans.result.rankedPlanRates, zipsOfInterest == ZipCodeSet.all(), plansFingerprint, zipsFingerprint, false, plansReport.getRows(),
+                zipsReport.getRows(), loadStartNanos, stageReports);
+    }
+
+    /**
+     * Load the index from a snapshot compiled from plans.csv and zips.csv
+     *
+     * @param snapshotFile the snapshot
+     * @return the index
+     * @throws IllegalStateException if the snapshot can't be loaded
+     */
+    public static SlcspIndex fromSnapshot(final Path snapshotFile) {
+        final long loadStartNanos = System.nanoTime();
+        try {
+            return fromSnapshot(DatasetSnapshot.read(snapshotFile), loadStartNanos, new ArrayList<>());
+        } catch (IOException e) {
+            throw new IllegalStateException("Problem loading file ('" + snapshotFile + "'): " + e);
+        }
+    }
+
+    private static SlcspIndex fromSnapshot(final DatasetSnapshot snapshot, final long loadStartNanos,
+                                           final List<StageReport> stageReports) {
+        return build(snapshot.getDatasetVersion(), snapshot.getRateAreaToSlcsp(), snapshot.getZipRateAreaTable(), null,
+                true, snapshot.getPlansFingerprint(), snapshot.getZipsFingerprint(), true, snapshot.getPlanRows(),
+                snapshot.getZipRows(), loadStartNanos, stageReports);
+    }
+
+    /**
+     * Get the SLCSP of a zip code
+     *
+     * @param zip the numeric value of the zip code (e.g. 6239 for "06239")
+     * @return the SLCSP, in rate units, or {@link #NO_SLCSP}
+     */
+    public long lookup(final int zip) {
+        final long slcsp = find(zip);
+        lookupCount.increment();
+        if (slcsp == NO_SLCSP) {
+            lookupsWithoutSlcspCount.increment();
+        }
+        return slcsp;
+    }
+
+    /**
+     * Get the SLCSP of a zip code
+     *
+     * @param zipCode the five-digit zip code
+     * @return the SLCSP, in rate units, or {@link #NO_SLCSP} (including if the zip code isn't five digits)
+     */
+    public long lookup(final String zipCode) {
+        return lookup(ZipCodeSet.parseZip(zipCode));
+    }
+
+    /**
+     * Get the SLCSP of each of a batch of zip codes
+     *
+     * @param zips  the numeric values of the zip codes
+     * @param rates receives the SLCSP of each zip code, in rate units, or {@link #NO_SLCSP}, at the same position as
+     *              the zip code.  Must be at least as long as zips.
+     */
+    public void lookup(final int[] zips, final long[] rates) {
+        if (rates.length < zips.length) {
+            throw new IllegalArgumentException("The rates array (" + rates.length
+                    + ") is shorter than the zips array (" + zips.length + ")");
+        }
+        int withoutSlcsp = 0;
+        for (int i = 0; i < zips.length; i++) {
+            rates[i] = find(zips[i]);
+            if (rates[i] == NO_SLCSP) {
+                withoutSlcsp++;
+            }
+        }
+        lookupCount.add(zips.length);
+        lookupsWithoutSlcspCount.add(withoutSlcsp);
+    }
+
+    /**
+     * Get another benchmark plan rate of a zip code: the n-th lowest distinct rate of a metal level in its rate area.
+     * A zip code in more than one rate area is treated as for its SLCSP: it only has a rate if just one of its rate
+     * areas does.  These lookups aren't counted in the lookup counters, which are of SLCSP lookups alone.
+     *
+     * @param zip        the numeric value of the zip code (e.g. 6239 for "06239")
+     * @param metalLevel the metal level
+     * @param rank       1 for the lowest rate, 2 for the second lowest, and so on, up to the maximum rank the index
+     *                   was built with
+     * @return the rate, in rate units, or {@link #NO_SLCSP} if it can't be determined
+     * @throws IllegalArgumentException if the rank is out of range
+     * @throws IllegalStateException    if the index doesn't keep the rates of every metal level (see
+     *                                  {@link #fromFiles(Path, Path, int)})
+     */
+    public long lookup(final int zip, final MetalLevel metalLevel, final int rank) {
+        if (rankedPlanRates == null) {
+            throw new IllegalStateException("This index only keeps the SLCSP of each zip code");
+        }
+        rankedPlanRates.checkRank(rank);
+        if (zip < 0 || zip >= ZipRateAreaTable.ZIP_CODE_SPACE) {
+            return NO_SLCSP;
+        }
+        final int rateAreaId = zipRateAreaTable.get(zip);
+        if (rateAreaId >= 0) {
+            return rankedPlanRates.getRate(metalLevel, rank, rateAreaId);
+        }
+        if (rateAreaId != ZipRateAreaTable.AMBIGUOUS) {
+            return NO_SLCSP;
+        }
+        long rate = NO_SLCSP;
+        int rateAreasWithRate = 0;
+        for (int rateAreaForZipcode : zipRateAreaTable.getAll(zip)) {
+            final long rateForArea = rankedPlanRates.getRate(metalLevel, rank, rateAreaForZipcode);
+            if (rateForArea != NO_SLCSP) {
+                rate = rateForArea;
+                rateAreasWithRate++;
+            }
+        }
+        return rateAreasWithRate == 1 ? rate : NO_SLCSP;
+    }
+
+    /**
+     * As {@link #lookup(int, MetalLevel, int)}
+     *
+     * @param zipCode the five-digit zip code
+     * @return the rate, in rate units, or {@link #NO_SLCSP} (including if the zip code isn't five digits)
+     */
+    public long lookup(final String zipCode, final MetalLevel metalLevel, final int rank) {
+        return lookup(ZipCodeSet.parseZip(zipCode), metalLevel, rank);
+    }
+
+    /**
+     * @return a label identifying the version of the reference data the index was built from
+     */
+    public String getDatasetVersion() {
+        return datasetVersion;
+    }
+
+    /**
+     * @return the number of data rows in the plans.csv the index was built from
+     */
+    public long getPlanRows() {
+        return planRows;
+    }
+
+    /**
+     * @return the number of data rows in the zips.csv the index was built from
+     */
+    public long getZipRows() {
+        return zipRows;
+    }
+
+    /**
+     * @return the number of zip codes with an SLCSP
+     */
+    public int getResolvedZipCount() {
+        return resolvedZipCount;
+    }
+
+    /**
+     * @return the number of zip codes with no SLCSP because they are in more than one rate area that has one
+     */
+    public int getAmbiguousZipCount() {
+        return ambiguousZipCount;
+    }
+
+    /**
+     * @return the number of zip codes with no SLCSP because their rate area has fewer than two Silver plan rates
+     */
+    public int getUnpricedZipCount() {
+        return unpricedZipCount;
+    }
+
+    /**
+     * @return the number of five-digit zip codes that aren't in the reference data (or, for an index built for a
+     * batch, that weren't asked for)
+     */
+    public int getUnknownZipCount() {
+        return ZipRateAreaTable.ZIP_CODE_SPACE - resolvedZipCount - ambiguousZipCount - unpricedZipCount;
+    }
+
+    /**
+     * @return how long it took to load the reference data and build the index, in milliseconds
+     */
+    public long getLoadMillis() {
+        return loadMillis;
+    }
+
+    /**
+     * @return the number of zip codes looked up so far, by any of the lookup methods
+     */
+    public long getLookupCount() {
+        return lookupCount.sum();
+    }
+
+    /**
+     * @return the number of zip codes looked up so far that had no SLCSP
+     */
+    public long getLookupsWithoutSlcspCount() {
+        return lookupsWithoutSlcspCount.sum();
+    }
+
+    /**
+     * Render a rate as text, e.g. "245.2"
+     *
+     * @param rate a rate, in rate units
+     * @return the rate as text, or an empty string for {@link #NO_SLCSP}
+     */
+    public static String formatRate(final long rate) {
+        return rate == NO_SLCSP ? "" : Rates.toString(rate);
+    }
+
+    /**
+     * @return roughly how many bytes of heap the index takes up
+     */
+    long getFootprintBytes() {
+        return (long) (rateAreaToSlcsp.length + zipToSlcsp.length) * Long.BYTES + zipRateAreaTable.getFootprintBytes()
+                + (rankedPlanRates == null ? 0 : rankedPlanRates.getFootprintBytes());
+    }
+
+    /**
+     * @return true if this index's reference data was read from a compiled snapshot, rather than from plans.csv and
+     * zips.csv (in which case it could be compiled into one)
+     */
+    boolean isFromSnapshot() {
+        return fromSnapshot;
+    }
+
+    /**
+     * @return the size and last modified time of the plans.csv this index was built from (directly, or by way of a
+     * snapshot)
+     */
+    DatasetSnapshot.SourceFingerprint getPlansFingerprint() {
+        return plansFingerprint;
+    }
+
+    /**
+     * Get a copy of this index with its SLCSP of each rate area (and its ranked rates, if it keeps them) rebuilt from
+     * plans.csv, keeping its rate areas of each zip code.  This index is unchanged.
+     *
+     * @param plansFile the plans.csv file
+     * @return the new index
+     * @throws IllegalStateException if plans.csv can't be loaded
+     */
+    SlcspIndex withPlansFrom(final Path plansFile) {
+        final long loadStartNanos = System.nanoTime();
+        final DatasetSnapshot.SourceFingerprint newPlansFingerprint = fingerprint(plansFile);
+        final List<StageReport> stageReports = new ArrayList<>();
+        final StageMetrics plansStage = StageMetrics.start(ProcessReport.REDUCE_PLANS);
+        final ReducedPlans reducedPlans = reducePlans(plansFile,
+                rankedPlanRates == null ? 0 : rankedPlanRates.getMaxRank(), plansStage);
+        plansStage.stop();
+        stageReports.add(plansStage.toReport());
+        return build(sourceVersion(newPlansFingerprint, zipsFingerprint), reducedPlans.rateAreaToSlcsp,
+                zipRateAreaTable, reducedPlans.rankedPlanRates, complete, newPlansFingerprint, zipsFingerprint, false, plansStage.toReport().getRows(), zipRows,
+                loadStartNanos, stageReports);
+    }
+
+    /**
+     * Get a copy of this index with its rate areas of each zip code rebuilt from zips.csv, keeping its SLCSP (and
+     * ranked rates) of each rate area.  This index is unchanged.
+     *
+     * @param zipsFile the zips.csv file
+     * @return the new index
+     * @throws IllegalStateException if zips.csv can't be loaded, or this index only holds some of the zip codes
+     */
+    SlcspIndex withZipsFrom(final Path zipsFile) {
+        if (!complete) {
+            throw new IllegalStateException("Only an index of every zip code can have its zip codes reloaded");
+        }
+        final long loadStartNanos = System.nanoTime();
+        final DatasetSnapshot.SourceFingerprint newZipsFingerprint = fingerprint(zipsFile);
+        final List<StageReport> stageReports = new ArrayList<>();
+        final StageMetrics zipsStage = StageMetrics.start(ProcessReport.GROUP_ZIPS);
+        final ZipRateAreaTable newZipRateAreaTable = buildZipRateAreaTable(zipsFile, ZipCodeSet.all(), zipsStage);
+        zipsStage.stop();
+        stageReports.add(zipsStage.toReport());
+        return build(sourceVersion(plansFingerprint, newZipsFingerprint), rateAreaToSlcsp, newZipRateAreaTable,
+                rankedPlanRates, true, plansFingerprint, newZipsFingerprint, false, planRows, zipsStage.toReport().getRows(),
+                loadStartNanos, stageReports);
+    }
+
+    /**
+     * Get a copy of this index with a new SLCSP for some of its rate areas.  Only the zip codes in those rate areas
+     * are linked to their SLCSP again; the rest of the index is carried over as it is, apart from any ranked rates,
+     * which the changed SLCSPs would leave out of date and so are dropped.  This index is unchanged.
+     *
+     * @param rateAreaSlcsps the new SLCSP of each changed rate area, by rate area id; {@link Rates#NO_RATE} for a rate
+     *                       area that no longer has one
+     * @param planRowChange  the number of rows added to plans.csv, less the number removed
+     * @param datasetVersion a label identifying the changed version of the reference data
+     * @return the new index
+     */
+    SlcspIndex withRateAreaSlcsps(final Map<Integer, Long> rateAreaSlcsps, final long planRowChange,
+                                  final String datasetVersion) {
+        final long startNanos = System.nanoTime();
+        final long[] newRateAreaToSlcsp = rateAreaToSlcsp.clone();
+        final boolean[] changed = new boolean[newRateAreaToSlcsp.length];
+        for (Map.Entry<Integer, Long> rateAreaSlcsp : rateAreaSlcsps.entrySet()) {
+            newRateAreaToSlcsp[rateAreaSlcsp.getKey()] = rateAreaSlcsp.getValue();
+            changed[rateAreaSlcsp.getKey()] = true;
+        }
+
+        final long[] newZipToSlcsp = zipToSlcsp.clone();
+        for (int zip = 0; zip < newZipToSlcsp.length; zip++) {
+            final int rateAreaId = zipRateAreaTable.get(zip);
+            if (rateAreaId >= 0) {
+                if (changed[rateAreaId]) {
+                    newZipToSlcsp[zip] = newRateAreaToSlcsp[rateAreaId];
+                }
+            } else if (rateAreaId == ZipRateAreaTable.AMBIGUOUS) {
+                for (int rateAreaForZipcode : zipRateAreaTable.getAll(zip)) {
+                    if (changed[rateAreaForZipcode]) {
+                        newZipToSlcsp[zip] = getSlcspOfAmbiguousZip(zipRateAreaTable, newRateAreaToSlcsp, zip);
+                        break;
+                    }
+                }
+            }
+        }
+        return new SlcspIndex(datasetVersion, newRateAreaToSlcsp, zipRateAreaTable, newZipToSlcsp, null, complete,
+                plansFingerprint, zipsFingerprint, fromSnapshot, planRows + planRowChange, zipRows, startNanos);
+    }
+
+    /**
+     * Compile this index's reference data into a snapshot, which can later be loaded in place of the CSV files.  The
+     * snapshot records plans.csv and zips.csv as they were when this index read them, so if either has changed since,
+     * the snapshot is out of date from the start.
+     *
+     * @param snapshotFile   where to write the snapshot
+     * @param datasetVersion a label identifying this version of the reference data
+     * @throws IOException           if the snapshot can't be written
+     * @throws IllegalStateException if this index only holds some of the zip codes
+     */
+    void writeSnapshot(final Path snapshotFile, final String datasetVersion) throws IOException {
+        if (!complete) {
+            throw new IllegalStateException("A snapshot can't be written from an index of only some zip codes");
+        }
+        DatasetSnapshot.write(snapshotFile, datasetVersion, plansFingerprint, zipsFingerprint, planRows, zipRows,
+                rateAreaToSlcsp, zipRateAreaTable);
+    }
+
+    /**
+     * Reduce plans.csv to the SLCSP of each rate area, along with the ranked rates of every metal level if asked for.
+     * The SLCSP is then taken from the ranked Silver rates, so that plans.csv is only read once.
+     *
+     * @param maxRank the highest rank of the ranked rates to keep, or 0 to keep only the SLCSP
+     */
+    private static ReducedPlans reducePlans(final Path plansFile, final int maxRank, final StageMetrics metrics) {
+        if (maxRank == 0) {
+            return new ReducedPlans(buildRateAreaToSlcspTable(plansFile, metrics), null);
+        }
+        final RankedPlanRates rankedPlanRates = RankedPlanRates.fromFile(plansFile, maxRank, metrics);
+        return new ReducedPlans(rankedPlanRates.toRateAreaTable(MetalLevel.SILVER, SLCSP_RANK), rankedPlanRates);
+    }
+
+    /**
+     * Get the (possible) slcsp by rate area, using data in plans.csv
+     * <p>
+     * It is possible that there is no value for a particular rate area, indicating that there was no slcsp
+     *
+     * @param plansFile the plans.csv file to read in
+     * @return a rate area table, indexed by rate area id, with value=slcsp for that rate area (if any), in
+     * {@link Rates} units.  The value is {@link Rates#NO_RATE} for any rate area with no slcsp.
+     */
+    static long[] buildRateAreaToSlcspTable(final Path plansFile) {
+        return buildRateAreaToSlcspTable(plansFile, StageMetrics.NONE);
+    }
+
+    /**
+     * As {@link #buildRateAreaToSlcspTable(Path)}, adding the rows and bytes scanned, and the allocations of the
+     * threads that scan the file, to the given stage
+     */
+    static long[] buildRateAreaToSlcspTable(final Path plansFile, final StageMetrics metrics) {
+        final SecondLowestCostTable rateAreaToCosts = new SecondLowestCostTable();
+        try {
+            // 1. Track the two lowest Silver plan costs for each rate area.
+            //    The scanner works on the raw bytes of the file, and skips the header row and any non-Silver plans.
+            //    Chunks of the file are accumulated in parallel, and the results are then merged.
+            //    Plans with the same cost as one already seen for the rate area are treated as duplicates.
+            for (SecondLowestCostTable partial : new PlansCsvScanner(plansFile).scanInParallel(SecondLowestCostTable::new, metrics)) {
+                rateAreaToCosts.addAll(partial);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Problem loading rateArea file ('" + plansFile + "'): " + e);
+        }
+
+        // 2. ...then get the the 2nd lowest silver plan (if any) for the Rate Area into the final table
+        return rateAreaToCosts.toSecondLowestCosts();
+    }
+
+    /**
+     * Get the rate areas for a zip code, using the data in zips.csv.  Do not return zipcode info for zipcodes
+     * not in the given set
+     *
+     * @param zipsFile       the zips.csv file to read in
+     * @param zipsOfInterest Used to limit the end result; we'll only return the data we need
+     * @return a table of zipcodes-to-rate areas
+     */
+    static ZipRateAreaTable buildZipRateAreaTable(final Path zipsFile, final ZipCodeSet zipsOfInterest) {
+        return buildZipRateAreaTable(zipsFile, zipsOfInterest, StageMetrics.NONE);
+    }
+
+    /**
+     * As {@link #buildZipRateAreaTable(Path, ZipCodeSet)}, adding the rows and bytes scanned to the given stage
+     */
+    static ZipRateAreaTable buildZipRateAreaTable(final Path zipsFile, final ZipCodeSet zipsOfInterest,
+                                                  final StageMetrics metrics) {
+        final ZipRateAreaTable zipRateAreaTable = new ZipRateAreaTable();
+        try {
+            /*
+                Note: the table ignores any duplicates.
+                (in this case, a duplicate is a row that has an identical Zip and Rate area to an earlier one,
+                even if they have different counties)
+
+                The scanner skips the header row, and discards rows for zip codes not in the given set before
+                doing any other work on them.  If only a few zip codes are wanted, and zips.csv has an index, only
+                their rows are read.
+            */
+            new ZipsCsvScanner(zipsFile).scanIndexedIfPossible(zipsOfInterest, zipRateAreaTable::add, metrics);
+        } catch (IOException e) {
+            throw new IllegalStateException("Problem loading file ('" + zipsFile + "'): " + e);
+        }
+        return zipRateAreaTable;
+    }
+
+    /**
+     * Get the final table, linking the zip codes to a slcsp price.
+     *
+     * @param zipRateAreaTable a table of zip codes pointing to their rate area(s)
+     * @param rateAreaToSlcsp  a table of SLCSP prices, indexed by rate area id.  The value is
+     *                         {@link Rates#NO_RATE} for rate areas with no SLCSP.
+     * @return a table indexed by the numeric zip code, with value=the slcsp price.  The value is
+     * {@link Rates#NO_RATE} for any zip code for which the slcsp was not determined.
+     */
+    static long[] buildFinalZipToSlcspPriceTable(final ZipRateAreaTable zipRateAreaTable,
+                                                 final long[] rateAreaToSlcsp) {
+        return buildFinalZipToSlcspPriceTable(zipRateAreaTable, rateAreaToSlcsp, StageMetrics.NONE);
+    }
+
+    /**
+     * As {@link #buildFinalZipToSlcspPriceTable(ZipRateAreaTable, long[])}, adding the number of zip codes with a
+     * rate area to the given stage
+     */
+    static long[] buildFinalZipToSlcspPriceTable(final ZipRateAreaTable zipRateAreaTable,
+                                                 final long[] rateAreaToSlcsp, final StageMetrics metrics) {
+        final long[] zipToSlcsp = new long[ZipRateAreaTable.ZIP_CODE_SPACE];
+        Arrays.fill(zipToSlcsp, Rates.NO_RATE);
+        long zipsWithRateArea = 0;
+        for (int zip = 0; zip < zipToSlcsp.length; zip++) {
+            final int rateAreaId = zipRateAreaTable.get(zip);
+            if (rateAreaId != ZipRateAreaTable.UNKNOWN) {
+                zipsWithRateArea++;
+            }
+            if (rateAreaId >= 0) {
+                // A rate area with no cost associated with it leaves the entry as NO_RATE
+                zipToSlcsp[zip] = rateAreaToSlcsp[rateAreaId];
+            } else if (rateAreaId == ZipRateAreaTable.AMBIGUOUS) {
+                zipToSlcsp[zip] = getSlcspOfAmbiguousZip(zipRateAreaTable, rateAreaToSlcsp, zip);
+            }
+        }
+        metrics.addRows(zipsWithRateArea);
+        return zipToSlcsp;
+    }
+
+    /**
+     * Get the SLCSP of a zip code that is in more than one rate area
+     *
+     * @return the SLCSP, or {@link Rates#NO_RATE} if it can't be determined
+     */
+    private static long getSlcspOfAmbiguousZip(final ZipRateAreaTable zipRateAreaTable, final long[] rateAreaToSlcsp,
+                                               final int zip) {
+        // Only consider the rate areas that have a cost associated with them...
+        long secondLowestForArea = Rates.NO_RATE;
+        int rateAreasWithCost = 0;
+        for (int rateAreaForZipcode : zipRateAreaTable.getAll(zip)) {
+            if (rateAreaToSlcsp[rateAreaForZipcode] != Rates.NO_RATE) {
+                secondLowestForArea = rateAreaToSlcsp[rateAreaForZipcode];
+                rateAreasWithCost++;
+            }
+        }
+        // ...and skip if there's more than one of those represented for the single zip code
+        return rateAreasWithCost == 1 ? secondLowestForArea : Rates.NO_RATE;
+    }
+
+    /**
+     * @return the SLCSP of the zip code, without counting the lookup
+     */
+    private long find(final int zip) {
+        return zip >= 0 && zip < ZipRateAreaTable.ZIP_CODE_SPACE ? zipToSlcsp[zip] : NO_SLCSP;
+    }
+
+    /**
+     * @return the number of the zip code's rate areas that have an SLCSP
+     */
+    private int rateAreasWithSlcsp(final int zip) {
+        int count = 0;
+        for (int rateAreaId : zipRateAreaTable.getAll(zip)) {
+            if (rateAreaToSlcsp[rateAreaId] != NO_SLCSP) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get a version label for reference data loaded straight from the CSV files: the time of the most recent change
+     * to either file
+     */
+    private static String sourceVersion(final DatasetSnapshot.SourceFingerprint plansFingerprint,
+                                        final DatasetSnapshot.SourceFingerprint zipsFingerprint) {
+        return "csv@" + Instant.ofEpochMilli(Math.max(plansFingerprint.getLastModifiedMillis(),
+                zipsFingerprint.getLastModifiedMillis()));
+    }
+
+    private static DatasetSnapshot.SourceFingerprint fingerprint(final Path file) {
+        try {
+            return DatasetSnapshot.SourceFingerprint.of(file);
+        } catch (IOException e) {
+            throw new IllegalStateException("Problem loading file ('" + file + "'): " + e);
+        }
+    }
+
+    /**
+     * Wait for the result of a step running in the background
+     *
+     * @param future the running step
+     * @param <T>    the type of result
+     * @return the result of the step.  If the step failed, its exception is rethrown here.
+     */
+    private static <T> T awaitResult(final CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * The result of a stage run in the background, along with its measurements
+     */
+    private static final class StageResult<T> {
+        final T result;
+        final StageMetrics metrics;
+
+        StageResult(final T result, final StageMetrics metrics) {
+            this.result = result;
+            this.metrics = metrics;
+        }
+    }
+
+    /**
+     * plans.csv reduced to the SLCSP of each rate area, and the ranked rates of every metal level if they were asked
+     * for (null otherwise)
+     */
+    private static final class ReducedPlans {
+        final long[] rateAreaToSlcsp;
+        final RankedPlanRates rankedPlanRates;
+
+        ReducedPlans(final long[] rateAreaToSlcsp, final RankedPlanRates rankedPlanRates) {
+            this.rateAreaToSlcsp = rateAreaToSlcsp;
+            this.rankedPlanRates = rankedPlanRates;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.adhoc.slcsp;
+
+/**
+ * The monitoring view of the SLCSP index a long-running process (such as the lookup service) is answering from,
+ * registered with the platform MBean server as "com.adhoc.slcsp:type=SlcspIndex".
+ * <p>
+ * Each attribute is read from the index as it is at the time, so the values follow the index if it is reloaded.
+ * Lookup counts start again from zero with each reloaded index.
+ */
+public interface SlcspIndexMXBean {
+
+    /**
+     * @return the label identifying the version of the reference data the index was built from
+     */
+    String getDatasetVersion();
+
+    /**
+     * @return the number of data rows in plans.csv
+     */
+    long getPlanRows();
+
+    /**
+     * @return the number of data rows in zips.csv
+     */
+    long getZipRows();
+
+    /**
+     * @return the number of zip codes with an SLCSP
+     */
+    int getResolvedZips();
+
+    /**
+     * @return the number of zip codes in more than one rate area that has an SLCSP
+     */
+    int getAmbiguousZips();
+
+    /**
+     * @return the number of zip codes whose rate area(s) have fewer than two Silver plan rates
+     */
+    int getUnpricedZips();
+
+    /**
+     * @return the number of five-digit zip codes that aren't in the reference data
+     */
+    int getUnknownZips();
+
+    /**
+     * @return how long the index took to load, in milliseconds
+     */
+    long getLastLoadMillis();
+
+    /**
+     * @return the number of zip codes looked up in the index
+     */
+    long getLookups();
+
+    /**
+     * @return the number of zip codes looked up in the index that had no SLCSP
+     */
+    long getLookupsWithoutSlcsp();
+
+    /**
+     * Load the reference data again, and answer from it once it's loaded
+     *
+     * @return the dataset version of the new index
+     */
+    String reload();
+
+    /**
+     * Apply a plan delta file to the index, and answer from the changed index once it's built
+     *
+     * @param deltaFile the path of the plan delta file
+     * @return the dataset version of the changed index
+     */
+    String applyPlanDelta(String deltaFile);
+}
@@ -0,0 +1,121 @@
+package com.adhoc.slcsp;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Exposes the index a long-running process is answering from as an MBean, so that it can be watched (with jconsole,
+ * say) without restarting the process.  Nothing is copied: every attribute is read from the current index on demand.
+ * The MBean can also be asked to reload the index, or to apply a plan delta file to it.
+ */
+final class SlcspIndexMonitor implements SlcspIndexMXBean {
+
+    /**
+     * The name the MBean is registered under
+     */
+    static final String OBJECT_NAME = "com.adhoc.slcsp:type=SlcspIndex";
+
+    private final ReloadableSlcspIndex index;
+
+    /**
+     * @param index holds the index being answered from
+     */
+    SlcspIndexMonitor(final ReloadableSlcspIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Register the MBean with the platform MBean server, replacing any registered earlier
+     *
+     * @param index holds the index being answered from
+     * @return the name the MBean was registered under
+     * @throws IllegalStateException if the MBean can't be registered
+     */
+    static ObjectName register(final ReloadableSlcspIndex index) {
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            final ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+            mBeanServer.registerMBean(new SlcspIndexMonitor(index), objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Problem registering MBean '" + OBJECT_NAME + "': " + e);
+        }
+    }
+
+    @Override
+    public String getDatasetVersion() {
+        return index.current().getDatasetVersion();
+    }
+
+    @Override
+    public long getPlanRows() {
+        return index.current().getPlanRows();
+    }
+
+    @Override
+    public long getZipRows() {
+        return index.current().getZipRows();
+    }
+
+    @Override
+    public int getResolvedZips() {
+        return index.current().getResolvedZipCount();
+    }
+
+    @Override
+    public int getAmbiguousZips() {
+        return index.current().getAmbiguousZipCount();
+    }
+
+    @Override
+    public int getUnpricedZips() {
+        return index.current().getUnpricedZipCount();
+    }
+
+    @Override
+    public int getUnknownZips() {
+        return index.current().getUnknownZipCount();
+    }
+
+    @Override
+    public long getLastLoadMillis() {
+        return index.current().getLoadMillis();
+    }
+
+    @Override
+    public long getLookups() {
+        return index.current().getLookupCount();
+    }
+
+    @Override
+    public long getLookupsWithoutSlcsp() {
+        return index.current().getLookupsWithoutSlcspCount();
+    }
+
+    @Override
+    public String reload() {
+        try {
+            return index.reload().join().getDatasetVersion();
+        } catch (CompletionException e) {
+            // rethrown as a plain exception, so that a JMX client can show it without this application's classes
+            throw new IllegalStateException("The reload failed, and the current index was kept: " + e.getCause());
+        }
+    }
+
+    @Override
+    public String applyPlanDelta(final String deltaFile) {
+        try {
+            return index.applyPlanDelta(Paths.get(deltaFile)).join().getDatasetVersion();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("The plan delta wasn't applied, and the current index was kept: "
+                    + e.getCause());
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.adhoc.slcsp;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Holds the indexes of several datasets (plan years, or states' filing versions, say) at once, each loaded the first
+ * time it's asked for, and keeps as many of them in memory as a budget allows.
+ * <p>
+ * Each dataset is a subdirectory of a single root directory, named by its dataset id, and holding plans.csv and
+ * zips.csv (and/or a snapshot compiled from them).  When the indexes loaded take up more than the budget, the least
+ * recently used are dropped.  A dataset that has been dropped is loaded again the next time it's asked for.  So that
+ * this is quick, the registry can be asked to compile a snapshot into the directory of any dataset that doesn't
+ * already have an up-to-date one, the first time it is loaded from its CSV files.
+ * <p>
+ * The registry is thread-safe.  Loading one dataset doesn't hold up lookups in the others, and two threads asking for
+ * the same dataset share a single load.  A dropped index keeps working for anyone still holding it.
+ */
+public final class SlcspIndexRegistry {
+
+    private final Path datasetsDir;
+    private final long memoryBudgetBytes;
+
+    /**
+     * Receives a message for each snapshot that can't be written, or null if snapshots aren't compiled
+     */
+    private final Consumer<String> snapshotProblems;
+
+    /**
+     * The datasets asked for, least recently used first.  Guarded by this.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The footprint of the indexes loaded.  Guarded by this.
+     */
+    private long residentBytes;
+
+    /**
+     * @param datasetsDir       the directory holding a subdirectory for each dataset, named by its dataset id
+     * @param memoryBudgetBytes how much heap the indexes loaded may take up between them.  The most recently used
+     *                          index is always kept, even if it alone is over budget.
+     */
+    public SlcspIndexRegistry(final Path datasetsDir, final long memoryBudgetBytes) {
+        this(datasetsDir, memoryBudgetBytes, null);
+    }
+
+    /**
+     * As {@link #SlcspIndexRegistry(Path, long)}, but compiling a snapshot into a dataset's directory the first time
+     * it is loaded from its CSV files, so that it loads quickly after being dropped
+     *
+     * @param snapshotProblems receives a message for each snapshot that can't be written.  The dataset then carries on
+     *                         loading from its CSV files.
+     */
+    public SlcspIndexRegistry(final Path datasetsDir, final long memoryBudgetBytes,
+                              final Consumer<String> snapshotProblems) {
+        this.datasetsDir = datasetsDir;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.snapshotProblems = snapshotProblems;
+    }
+
+    /**
+     * Get the index of a dataset, loading it if it isn't in memory
+     *
+     * @param datasetId the name of the dataset's subdirectory
+     * @return the index.  Hold on to it (rather than calling this again) for lookups that must be answered from the
+     * same index.
+     * @throws IllegalArgumentException if there is no such dataset
+     * @throws IllegalStateException    if the dataset can't be loaded
+     */
+    public SlcspIndex get(final String datasetId) {
+        final Path dataDir = datasetsDir.resolve(datasetId).normalize();
+        if (!datasetsDir.normalize().equals(dataDir.getParent()) || !Files.isDirectory(dataDir)) {
+            throw new IllegalArgumentException("No dataset '" + datasetId + "' in '" + datasetsDir + "'");
+        }
+
+        final Entry entry;
+        synchronized (this) {
+            entry = entries.computeIfAbsent(datasetId, Entry::new);
+        }
+        synchronized (entry) {
+            if (entry.slcspIndex == null) {
+                try {
+                    entry.slcspIndex = load(dataDir);
+                } catch (RuntimeException e) {
+                    synchronized (this) {
+                        entries.remove(datasetId, entry);
+                    }
+                    throw e;
+                }
+                synchronized (this) {
+                    entry.footprintBytes = entry.slcspIndex.getFootprintBytes();
+                    residentBytes += entry.footprintBytes;
+                    evictOverBudget(entry);
+                }
+            }
+            return entry.slcspIndex;
+        }
+    }
+
+    /**
+     * @return the ids of the datasets whose indexes are in memory, least recently used first
+     */
+    public synchronized List<String> getResidentDatasetIds() {
+        final List<String> datasetIds = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (entry.footprintBytes > 0) {
+                datasetIds.add(entry.datasetId);
+            }
+        }
+        return datasetIds;
+    }
+
+    /**
+     * @return roughly how many bytes of heap the indexes in memory take up between them
+     */
+    public synchronized long getResidentBytes() {
+        return residentBytes;
+    }
+
+    /**
+     * Drop the least recently used indexes until the rest fit within the budget.  Datasets still being loaded are
+     * left alone.  Called with the lock on this held.
+     *
+     * @param newest the index just loaded, which is kept regardless
+     */
+    private void evictOverBudget(final Entry newest) {
+        final Iterator<Entry> leastRecentlyUsed = entries.values().iterator();
+        while (residentBytes > memoryBudgetBytes && leastRecentlyUsed.hasNext()) {
+            final Entry entry = leastRecentlyUsed.next();
+            if (entry != newest && entry.footprintBytes > 0) {
+                leastRecentlyUsed.remove();
+                residentBytes -= entry.footprintBytes;
+            }
+        }
+    }
+
+    /**
+     * Load a dataset's index, compiling a snapshot for next time (if asked to) if it had to be loaded from the CSV
+     * files
+     */
+    private SlcspIndex load(final Path dataDir) {
+        final SlcspIndex slcspIndex = SlcspIndex.load(dataDir);
+        if (snapshotProblems != null && !slcspIndex.isFromSnapshot()) {
+            final Path snapshotFile = dataDir.resolve(DatasetSnapshot.FILE_NAME);
+            try {
+                slcspIndex.writeSnapshot(snapshotFile, slcspIndex.getDatasetVersion());
+            } catch (IOException e) {
+                snapshotProblems.accept("Problem writing file ('" + snapshotFile + "'): " + e);
+            }
+        }
+        return slcspIndex;
+    }
+
+    /**
+     * A dataset that has been asked for.  Its index is null until loaded, and its footprint zero.
+     */
+    private static final class Entry {
+        private final String datasetId;
+        /**
+         * Guarded by this entry
+         */
+        private SlcspIndex slcspIndex;
+        /**
+         * Guarded by the registry
+         */
+        private long footprintBytes;
+
+        Entry(final String datasetId) {
+            this.datasetId = datasetId;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.adhoc.slcsp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Answers SLCSP lookups over HTTP on the loopback interface, from an index built before the server starts (and
+ * possibly replaced while it runs; each request is answered from whichever index is current when it arrives).
+ * <p>
+ * Two requests are supported, both on the /slcsp path, and both answered in the same CSV layout as the batch
+ * results file (a "zipcode,rate" header, then one line per zip code, with an empty rate if there is no SLCSP):
+ * <pre>
+ *   GET  /slcsp?zip=64148     a single zip code
+ *   POST /slcsp               a batch: the body holds one zip code per line; results come back in the same order
+ * </pre>
+ * A zip code must be exactly five digits; any other value is refused with a 400, so that nothing but a zip code and
+ * its rate is ever written into a result line.  As in the batch results file, a blank line of a batch gets a blank
+ * result line, so that the results line up with the lines of the body.  A batch body larger than
+ * {@link #MAX_REQUEST_BYTES} is refused with a 413, so that no request can make the server hold more than a bounded
+ * amount of memory.  Any path other than /slcsp gets a 404.
+ */
+final class SlcspServer {
+
+    private static final String PATH = "/slcsp";
+
+    private static final String ZIP_PARAMETER = "zip";
+
+    /**
+     * The largest batch request body accepted, in bytes: room for 100,000 zip codes, one per line
+     */
+    static final int MAX_REQUEST_BYTES = 100_000 * "64148,\r\n".length();
+
+    private final Supplier<SlcspIndex> currentIndex;
+    private final HttpServer httpServer;
+    private final ExecutorService executor;
+
+    /**
+     * @param currentIndex supplies the index to answer lookups from
+     * @param port         the port to listen on; 0 for any free port
+     */
+    SlcspServer(final Supplier<SlcspIndex> currentIndex, final int port) throws IOException {
+        this.currentIndex = currentIndex;
+        this.httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        httpServer.setExecutor(executor);
+        httpServer.createContext(PATH, this::handle);
+    }
+
+    void start() {
+        httpServer.start();
+    }
+
+    void stop() {
+        httpServer.stop(0);
+        executor.shutdown();
+    }
+
+    /**
+     * @return the port the server is listening on
+     */
+    int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        try {
+            // a context matches every path it is a prefix of
+            if (!PATH.equals(exchange.getRequestURI().getPath())) {
+                sendResponse(exchange, 404, "Lookups are answered at " + PATH + "\n");
+                return;
+            }
+            final SlcspIndex slcspIndex = currentIndex.get();
+            final StringBuilder response = new StringBuilder("zipcode,rate\n");
+            if ("GET".equals(exchange.getRequestMethod())) {
+                final String zipCode;
+                try {
+                    zipCode = getZipParameter(exchange.getRequestURI().getRawQuery());
+                } catch (IllegalArgumentException e) {
+                    sendResponse(exchange, 400, "The query string is not properly encoded\n");
+                    return;
+                }
+                if (zipCode == null) {
+                    sendResponse(exchange, 400, "A zip code must be given as the 'zip' query parameter\n");
+                    return;
+                }
+                final int zip = ZipCodeSet.parseZip(zipCode);
+                if (zip < 0) {
+                    sendResponse(exchange, 400, "The 'zip' query parameter must be a five-digit zip code\n");
+                    return;
+                }
+                appendResult(response, slcspIndex, zip);
+            } else if ("POST".equals(exchange.getRequestMethod())) {
+                final byte[] body = readRequestBody(exchange);
+                if (body == null) {
+                    sendResponse(exchange, 413, "A batch may be at most " + MAX_REQUEST_BYTES + " bytes\n");
+                    return;
+                }
+                try (
+                        final BufferedReader br = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8))
+                ) {
+                    String line;
+                    int lineNumber = 0;
+                    while ((line = br.readLine()) != null) {
+                        lineNumber++;
+                        final String zipCode = line.endsWith(",") ? line.substring(0, line.length() - 1) : line;
+                        if (zipCode.isEmpty()) {
+                            response.append(",\n");
+                            continue;
+                        }
+                        final int zip = ZipCodeSet.parseZip(zipCode);
+                        if (zip < 0) {
+                            sendResponse(exchange, 400, "Line " + lineNumber + " is not a five-digit zip code\n");
+                            return;
+                        }
+                        appendResult(response, slcspIndex, zip);
+                    }
+                }
+            } else {
+                sendResponse(exchange, 405, "Only GET and POST are supported\n");
+                return;
+            }
+            sendResponse(exchange, 200, response.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Append a result line for the given zip code
+     *
+     * @param zip the numeric value of the zip code
+     */
+    private static void appendResult(final StringBuilder response, final SlcspIndex slcspIndex, final int zip) {
+        response.append(ZipCodeSet.toZipCode(zip)).append(',');
+        final long slcsp = slcspIndex.lookup(zip);
+        if (slcsp != SlcspIndex.NO_SLCSP) {
+            Rates.appendTo(response, slcsp);
+        }
+        response.append('\n');
+    }
+
+    /**
+     * Read the whole of a request body, unless it's larger than {@link #MAX_REQUEST_BYTES}
+     *
+     * @return the body, or null if it is too large
+     */
+    private static byte[] readRequestBody(final HttpExchange exchange) throws IOException {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final byte[] chunk = new byte[8192];
+        try (
+                final InputStream requestBody = exchange.getRequestBody()
+        ) {
+            int bytesRead;
+            while ((bytesRead = requestBody.read(chunk)) >= 0) {
+                if (body.size() + bytesRead > MAX_REQUEST_BYTES) {
+                    return null;
+                }
+                body.write(chunk, 0, bytesRead);
+            }
+        }
+        return body.toByteArray();
+    }
+
+    /**
+     * @param query the raw (still URL-encoded) query string
+     * @return the decoded value of the zip query parameter, or null if there isn't one
+     * @throws IllegalArgumentException if the query string isn't properly URL-encoded
+     */
+    private static String getZipParameter(final String query) {
+        if (query == null) {
+            return null;
+        }
+        for (String parameter : query.split("&")) {
+            final int equals = parameter.indexOf('=');
+            if (equals > 0 && ZIP_PARAMETER.equals(urlDecode(parameter.substring(0, equals)))) {
+                return urlDecode(parameter.substring(equals + 1));
+            }
+        }
+        return null;
+    }
+
+    private static String urlDecode(final String encoded) {
+        try {
+            return URLDecoder.decode(encoded, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            // every JVM supports UTF-8
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sendResponse(final HttpExchange exchange, final int status, final String body) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", status == 200 ? "text/csv; charset=utf-8" : "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (
+                final OutputStream responseBody = exchange.getResponseBody()
+        ) {
+            responseBody.write(bytes);
+        }
+    }
+}
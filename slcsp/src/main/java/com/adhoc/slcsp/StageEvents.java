@@ -0,0 +1,169 @@
+package com.adhoc.slcsp;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events for the stages of a run, so that a recording lines the stage boundaries up with GC
+ * pauses and CPU samples.  Each event spans its stage, and carries the rows and bytes the stage worked through, and
+ * the file or dataset version it worked on.
+ * <p>
+ * When nothing is recording these events, no event is created or begun (whether one is wanted is asked of the event
+ * type, which is looked up once), and {@link StageMetrics} holds null in its place.
+ * <p>
+ * The jdk.jfr API isn't part of Java SE 8, so this class is only built on JDK 11 and later (the pom leaves it out
+ * elsewhere), and {@link StageMetrics} only loads it, by name, if the JVM has the API.
+ */
+final class StageEvents implements StageMetrics.EventRecorder {
+
+    private static final EventType FILE_LOAD = EventType.getEventType(FileLoadEvent.class);
+    private static final EventType PLAN_REDUCTION = EventType.getEventType(PlanReductionEvent.class);
+    private static final EventType ZIP_GROUPING = EventType.getEventType(ZipGroupingEvent.class);
+    private static final EventType JOIN = EventType.getEventType(JoinEvent.class);
+    private static final EventType WRITE = EventType.getEventType(WriteEvent.class);
+
+    /**
+     * Created by {@link StageMetrics}, by reflection
+     */
+    StageEvents() {
+    }
+
+    /**
+     * Begin the event for the given stage, if it is being recorded
+     *
+     * @param stage the name of the stage, one of the stage names in {@link ProcessReport}
+     * @return the event, or null if it isn't being recorded
+     */
+    @Override
+    public Object begin(final String stage) {
+        final EventType eventType = eventType(stage);
+        if (eventType == null || !eventType.isEnabled()) {
+            return null;
+        }
+        final StageEvent event = create(stage);
+        event.begin();
+        return event;
+    }
+
+    /**
+     * End and commit an event begun by {@link #begin(String)}, if it passes the recording's threshold
+     */
+    @Override
+    public void commit(final Object stageEvent, final String dataset, final long rows, final long bytes,
+                       final long allocatedBytes) {
+        final StageEvent event = (StageEvent) stageEvent;
+        event.end();
+        if (event.shouldCommit()) {
+            event.dataset = dataset;
+            event.rows = rows;
+            event.bytes = bytes;
+            event.allocatedBytes = allocatedBytes;
+            event.commit();
+        }
+    }
+
+    /**
+     * @return the type of event for the given stage, or null if the stage has none
+     */
+    private static EventType eventType(final String stage) {
+        switch (stage) {
+            case ProcessReport.READ_INPUT:
+            case ProcessReport.LOAD_SNAPSHOT:
+                return FILE_LOAD;
+            case ProcessReport.REDUCE_PLANS:
+                return PLAN_REDUCTION;
+            case ProcessReport.GROUP_ZIPS:
+                return ZIP_GROUPING;
+            case ProcessReport.JOIN:
+                return JOIN;
+            case ProcessReport.WRITE_RESULTS:
+                return WRITE;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return a new event for the given stage, which must be one that {@link #eventType(String)} has a type for
+     */
+    private static StageEvent create(final String stage) {
+        switch (stage) {
+            case ProcessReport.READ_INPUT:
+            case ProcessReport.LOAD_SNAPSHOT:
+                return new FileLoadEvent(stage);
+            case ProcessReport.REDUCE_PLANS:
+                return new PlanReductionEvent();
+            case ProcessReport.GROUP_ZIPS:
+                return new ZipGroupingEvent();
+            case ProcessReport.JOIN:
+                return new JoinEvent();
+            case ProcessReport.WRITE_RESULTS:
+                return new WriteEvent();
+            default:
+                throw new IllegalArgumentException("No event for stage '" + stage + "'");
+        }
+    }
+
+
+    @Category("SLCSP")
+    @StackTrace(false)
+    abstract static class StageEvent extends Event {
+        @Label("Dataset")
+        @Description("The file, or the version of the reference data, the stage worked on")
+        String dataset;
+
+        @Label("Rows")
+        long rows;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Allocated")
+        @Description("Bytes allocated by every thread working on the stage; -1 if the JVM can't say")
+        @DataAmount
+        long allocatedBytes;
+    }
+
+    @Name("com.adhoc.slcsp.FileLoad")
+    @Label("SLCSP File Load")
+    @Description("Reading slcsp.csv, or loading a compiled snapshot of the reference data")
+    static final class FileLoadEvent extends StageEvent {
+        @Label("Stage")
+        String stage;
+
+        FileLoadEvent(final String stage) {
+            this.stage = stage;
+        }
+    }
+
+    @Name("com.adhoc.slcsp.PlanReduction")
+    @Label("SLCSP Plan Reduction")
+    @Description("Finding the SLCSP of each rate area in plans.csv")
+    static final class PlanReductionEvent extends StageEvent {
+    }
+
+    @Name("com.adhoc.slcsp.ZipGrouping")
+    @Label("SLCSP Zip Grouping")
+    @Description("Finding the rate area(s) of each zip code in zips.csv")
+    static final class ZipGroupingEvent extends StageEvent {
+    }
+
+    @Name("com.adhoc.slcsp.Join")
+    @Label("SLCSP Join")
+    @Description("Linking each zip code to the SLCSP of its rate area")
+    static final class JoinEvent extends StageEvent {
+    }
+
+    @Name("com.adhoc.slcsp.Write")
+    @Label("SLCSP Write")
+    @Description("Writing the results to slcsp.csv")
+    static final class WriteEvent extends StageEvent {
+    }
+}
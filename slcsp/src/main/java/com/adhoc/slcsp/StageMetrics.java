@@ -0,0 +1,202 @@
+package com.adhoc.slcsp;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures one stage of a run while it is in progress: its wall time, the rows and bytes it works through, and the
+ * bytes it allocates.
+ * <p>
+ * A stage is started and stopped on the same thread, and the allocations of that thread in between are counted.
+ * Work the stage hands off to other threads (such as the parallel chunks of plans.csv) is counted by bracketing it
+ * with {@link #startWorkerPart()} and {@link #endWorkerPart(long)} on the thread that does it.  Allocations are read
+ * from the per-thread counters of the thread MXBean; where the JVM doesn't support those, they are reported as -1.
+ * <p>
+ * Rows, bytes and worker allocations can be added from any thread.
+ * <p>
+ * Each stage is also a Java Flight Recorder event (see StageEvents), when one is being recorded, the JVM has the
+ * jdk.jfr API, and the application was built on JDK 11 or later.
+ * <p>
+ * Work that isn't measured as a stage of its own is given {@link #NONE}, which records nothing.
+ */
+final class StageMetrics {
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    /**
+     * Records the flight recorder event of each stage; null on a JVM without the jdk.jfr API (Java 8 before update
+     * 262), or if StageEvents was left out of the build (as it is on JDKs before 11)
+     */
+    private static final EventRecorder EVENT_RECORDER = loadEventRecorder();
+
+    /**
+     * Stands in for the measurements of work that isn't reported as a stage: it records nothing, begins no flight
+     * recorder event, and can't be reported.  Safe to share between threads.
+     */
+    static final StageMetrics NONE = new StageMetrics();
+
+    private final String name;
+
+    /**
+     * False only for {@link #NONE}
+     */
+    private final boolean measured;
+
+    private final Thread thread;
+    private final long startNanos;
+    private final long startAllocatedBytes;
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong workerAllocatedBytes = new AtomicLong();
+
+    /**
+     * The stage's flight recorder event, or null if it isn't being recorded
+     */
+    private final Object event;
+
+    private volatile String dataset;
+
+    private volatile long wallNanos = -1;
+    private volatile long allocatedBytes = -1;
+
+    private StageMetrics(final String name) {
+        this.name = name;
+        this.measured = true;
+        this.thread = Thread.currentThread();
+        this.startAllocatedBytes = currentThreadAllocatedBytes();
+        this.event = EVENT_RECORDER != null ? EVENT_RECORDER.begin(name) : null;
+        this.startNanos = System.nanoTime();
+    }
+
+    private StageMetrics() {
+        this.name = "none";
+        this.measured = false;
+        this.thread = null;
+        this.startAllocatedBytes = -1;
+        this.event = null;
+        this.startNanos = 0;
+    }
+
+    /**
+     * Start measuring a stage, on the thread that will do (or hand out) its work
+     *
+     * @param name the name of the stage, as reported
+     * @return the measurement in progress
+     */
+    static StageMetrics start(final String name) {
+        return new StageMetrics(name);
+    }
+
+    /**
+     * @param dataset the file, or the version of the reference data, the stage works on
+     */
+    void setDataset(final String dataset) {
+        if (measured) {
+            this.dataset = dataset;
+        }
+    }
+
+    void addRows(final long count) {
+        if (measured) {
+            rows.addAndGet(count);
+        }
+    }
+
+    void addBytes(final long count) {
+        if (measured) {
+            bytes.addAndGet(count);
+        }
+    }
+
+    /**
+     * Mark the start of some of the stage's work on the current thread
+     *
+     * @return a checkpoint to pass to {@link #endWorkerPart(long)} once the work is done, on the same thread
+     */
+    long startWorkerPart() {
+        // The stage's own thread is already counted in full
+        return !measured || Thread.currentThread() == thread ? -1 : currentThreadAllocatedBytes();
+    }
+
+    /**
+     * Count the allocations made on the current thread since the given checkpoint
+     */
+    void endWorkerPart(final long checkpoint) {
+        if (checkpoint >= 0) {
+            final long allocatedNow = currentThreadAllocatedBytes();
+            if (allocatedNow >= 0) {
+                workerAllocatedBytes.addAndGet(allocatedNow - checkpoint);
+            }
+        }
+    }
+
+    /**
+     * Stop measuring the stage.  Must be called on the thread that started it.
+     */
+    void stop() {
+        if (!measured) {
+            return;
+        }
+        wallNanos = System.nanoTime() - startNanos;
+        final long allocatedNow = currentThreadAllocatedBytes();
+        if (startAllocatedBytes >= 0 && allocatedNow >= 0) {
+            allocatedBytes = allocatedNow - startAllocatedBytes + workerAllocatedBytes.get();
+        }
+        if (event != null) {
+            EVENT_RECORDER.commit(event, dataset, rows.get(), bytes.get(), allocatedBytes);
+        }
+    }
+
+    /**
+     * @return the measurements of the stage, which must have been stopped
+     */
+    StageReport toReport() {
+        if (!measured) {
+            throw new IllegalStateException("Work that isn't measured as a stage has no report");
+        }
+        if (wallNanos < 0) {
+            throw new IllegalStateException("Stage '" + name + "' has not been stopped");
+        }
+        return new StageReport(name, wallNanos, rows.get(), bytes.get(), allocatedBytes);
+    }
+
+    private static EventRecorder loadEventRecorder() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            // named rather than referred to, so that this class compiles without it
+            return (EventRecorder) Class.forName("com.adhoc.slcsp.StageEvents").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Begins and commits the flight recorder event of each stage
+     */
+    interface EventRecorder {
+        /**
+         * @param stage the name of the stage, one of the stage names in {@link ProcessReport}
+         * @return the event, or null if it isn't being recorded
+         */
+        Object begin(String stage);
+
+        /**
+         * End and commit an event returned by {@link #begin(String)}
+         */
+        void commit(Object event, String dataset, long rows, long bytes, long allocatedBytes);
+    }
+
+    /**
+     * @return the bytes allocated so far by the current thread, or -1 if the JVM can't say
+     */
+    private static long currentThreadAllocatedBytes() {
+        if (THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean) {
+            final com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) THREAD_MX_BEAN;
+            if (threadMXBean.isThreadAllocatedMemorySupported() && threadMXBean.isThreadAllocatedMemoryEnabled()) {
+                return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,75 @@
+package com.adhoc.slcsp;
+
+/**
+ * The measurements of one stage of a run: its wall time, the rows and bytes it worked through, and the bytes it
+ * allocated, along with the throughput those give.
+ * <p>
+ * Rows and bytes are whatever the stage reads or writes: data rows and bytes of a file for the stages that read or
+ * write one, and zip codes for the stage that links zip codes to their SLCSP.
+ */
+public final class StageReport {
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+
+    private final String name;
+    private final long wallNanos;
+    private final long rows;
+    private final long bytes;
+    private final long allocatedBytes;
+
+    StageReport(final String name, final long wallNanos, final long rows, final long bytes,
+                final long allocatedBytes) {
+        this.name = name;
+        this.wallNanos = wallNanos;
+        this.rows = rows;
+        this.bytes = bytes;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * @return the name of the stage; one of the stage names in {@link ProcessReport}
+     */
+    public String getName() {
+        return name;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the bytes allocated by the stage, on every thread that worked on it, or -1 if the JVM can't say
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public double getRowsPerSecond() {
+        return wallNanos == 0 ? 0 : rows * NANOS_PER_SECOND / wallNanos;
+    }
+
+    public double getBytesPerSecond() {
+        return wallNanos == 0 ? 0 : bytes * NANOS_PER_SECOND / wallNanos;
+    }
+
+    /**
+     * @return the measurements on a single line, e.g.
+     * "reduce plans        41.2ms       22,239 rows        539,261 rows/s      17.6 MB/s       3.3 MB allocated"
+     */
+    @Override
+    public String toString() {
+        return String.format("%-14s %9.1fms %,12d rows %,14.0f rows/s %,9.1f MB/s %,9.1f MB allocated",
+                name, wallNanos / 1_000_000.0, rows, getRowsPerSecond(), getBytesPerSecond() / BYTES_PER_MB,
+                allocatedBytes < 0 ? Double.NaN : allocatedBytes / BYTES_PER_MB);
+    }
+}
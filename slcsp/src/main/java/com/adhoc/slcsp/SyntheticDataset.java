@@ -0,0 +1,440 @@
+package com.adhoc.slcsp;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Writes a made-up, but realistically shaped, set of input files at any scale: plans.csv, zips.csv and slcsp.csv,
+ * laid out as in the data directory, along with slcsp-original.csv (a copy of slcsp.csv) and
+ * slcsp-expected-result.csv (the results a correct run should produce).  The sample data is too small to show how
+ * the application behaves with millions of plans or tens of millions of zip codes to look up.
+ * <p>
+ * The awkward cases can be dialled up or down: the share of zip codes that are in more than one rate area, and the
+ * share of rate areas with fewer than two distinct Silver plan rates (none at all, only one, or only duplicates).
+ * The same settings and seed always give the same files.
+ * <p>
+ * The expected results are worked out as the files are written, from what was written, without using the
+ * application's own parsing, lookups or formatting, so that a bug in any of those shows up as a difference.  Like the
+ * results file, the expected results end each line with the platform's line separator.
+ */
+final class SyntheticDataset {
+
+    private static final String[] STATE_CODES = {
+            "AK", "AL", "AR", "AZ", "CA", "CO", "CT", "DC", "DE", "FL", "GA", "HI", "IA", "ID", "IL", "IN", "KS",
+            "KY", "LA", "MA", "MD", "ME", "MI", "MN", "MO", "MS", "MT", "NC", "ND", "NE", "NH", "NJ", "NM", "NV",
+            "NY", "OH", "OK", "OR", "PA", "RI", "SC", "SD", "TN", "TX", "UT", "VA", "VT", "WA", "WI", "WV", "WY"};
+
+    private static final String[] NON_SILVER_METAL_LEVELS = {"Bronze", "Gold", "Platinum", "Catastrophic"};
+
+    /**
+     * Rate area numbers run from 1 up to this value within each state
+     */
+    private static final int MAX_RATE_AREAS_PER_STATE = 127;
+
+    /**
+     * The share of randomly placed plans that are Silver; about the same as in the sample data
+     */
+    private static final double SILVER_SHARE = 0.38;
+
+    /**
+     * The share of zips.csv rows that repeat a zip code and rate area, for another county
+     */
+    private static final double EXTRA_COUNTY_SHARE = 0.25;
+
+    /**
+     * The share of requested zip codes that are not in zips.csv at all
+     */
+    private static final double UNKNOWN_REQUEST_SHARE = 0.02;
+
+    /**
+     * Plan rates are drawn from this range, in cents
+     */
+    private static final int MIN_RATE_CENTS = 100_00;
+    private static final int MAX_RATE_CENTS = 1_000_00;
+
+    /**
+     * Roughly the proportions of the sample data, used to scale the rate areas and zip codes to the number of plans
+     */
+    private static final int PLANS_PER_RATE_AREA = 50;
+    private static final int ZIPS_PER_PLAN = 2;
+
+    /**
+     * The shares used when none are given: about the same as in the sample data
+     */
+    static final double DEFAULT_MULTI_RATE_AREA_ZIP_SHARE = 0.1;
+    static final double DEFAULT_SPARSE_RATE_AREA_SHARE = 0.05;
+
+    private static final long NONE = Long.MAX_VALUE;
+
+    /**
+     * The five-digit form of every zip code, with any leading zeros
+     */
+    private static final String[] ZIP_CODES = new String[ZipRateAreaTable.ZIP_CODE_SPACE];
+
+    static {
+        for (int zip = 0; zip < ZIP_CODES.length; zip++) {
+            ZIP_CODES[zip] = String.format("%05d", zip);
+        }
+    }
+
+    private final int planCount;
+    private final int rateAreaCount;
+    private final int zipCount;
+    private final long requestRows;
+    private final double multiRateAreaZipShare;
+    private final double sparseRateAreaShare;
+    private final long seed;
+
+    /**
+     * @param planCount             the number of rows in plans.csv
+     * @param rateAreaCount         the number of rate areas, spread across the states
+     * @param zipCount              the number of distinct zip codes in zips.csv; at most 100,000
+     * @param requestRows           the number of zip codes in slcsp.csv
+     * @param multiRateAreaZipShare the share (0 to 1) of zip codes that are in two rate areas
+     * @param sparseRateAreaShare   the share (0 to 1) of rate areas with fewer than two distinct Silver plan rates
+     * @param seed                  seeds the random choices
+     */
+    SyntheticDataset(final int planCount, final int rateAreaCount, final int zipCount, final long requestRows,
+                     final double multiRateAreaZipShare, final double sparseRateAreaShare, final long seed) {
+        if (rateAreaCount < 1 || rateAreaCount > STATE_CODES.length * MAX_RATE_AREAS_PER_STATE) {
+            throw new IllegalArgumentException("The number of rate areas must be between 1 and "
+                    + STATE_CODES.length * MAX_RATE_AREAS_PER_STATE + ": " + rateAreaCount);
+        }
+        if (zipCount < 1 || zipCount > ZipRateAreaTable.ZIP_CODE_SPACE) {
+            throw new IllegalArgumentException("The number of zip codes must be between 1 and "
+                    + ZipRateAreaTable.ZIP_CODE_SPACE + ": " + zipCount);
+        }
+        if (planCount < 2 * rateAreaCount) {
+            throw new IllegalArgumentException("There must be at least two plans per rate area: " + planCount
+                    + " plans for " + rateAreaCount + " rate areas");
+        }
+        if (multiRateAreaZipShare < 0 || multiRateAreaZipShare > 1 || sparseRateAreaShare < 0 || sparseRateAreaShare > 1) {
+            throw new IllegalArgumentException("Shares must be between 0 and 1");
+        }
+        this.planCount = planCount;
+        this.rateAreaCount = rateAreaCount;
+        this.zipCount = zipCount;
+        this.requestRows = requestRows;
+        this.multiRateAreaZipShare = multiRateAreaZipShare;
+        this.sparseRateAreaShare = sparseRateAreaShare;
+        this.seed = seed;
+    }
+
+    /**
+     * Get a dataset with the given number of plans, and as many rate areas and zip codes as that many plans would
+     * have in the sample data (up to the most there can be)
+     *
+     * @param planCount             the number of rows in plans.csv
+     * @param requestRows           the number of zip codes in slcsp.csv
+     * @param multiRateAreaZipShare the share (0 to 1) of zip codes that are in two rate areas
+     * @param sparseRateAreaShare   the share (0 to 1) of rate areas with fewer than two distinct Silver plan rates
+     * @param seed                  seeds the random choices
+     */
+    static SyntheticDataset scaledTo(final int planCount, final long requestRows, final double multiRateAreaZipShare,
+                                     final double sparseRateAreaShare, final long seed) {
+        return new SyntheticDataset(planCount,
+                Math.max(1, Math.min(STATE_CODES.length * MAX_RATE_AREAS_PER_STATE, planCount / PLANS_PER_RATE_AREA)),
+                (int) Math.max(1, Math.min(ZipRateAreaTable.ZIP_CODE_SPACE, (long) planCount * ZIPS_PER_PLAN)),
+                requestRows, multiRateAreaZipShare, sparseRateAreaShare, seed);
+    }
+
+    /**
+     * Arguments: the directory to write to, the number of plans, the number of requested zip codes, and optionally
+     * the share of zip codes in more than one rate area, the share of rate areas with fewer than two Silver plan
+     * rates, and the seed.  The other sizes are scaled to the number of plans as in the sample data.
+     */
+    public static void main(String args[]) throws IOException {
+        if (args == null || args.length < 3) {
+            throw new IllegalStateException("Expected: <directory> <plan count> <request rows> "
+                    + "[multi-rate-area zip share] [sparse rate area share] [seed]");
+        }
+        final SyntheticDataset dataset = scaledTo(Integer.parseInt(args[1]), Long.parseLong(args[2]),
+                args.length > 3 ? Double.parseDouble(args[3]) : DEFAULT_MULTI_RATE_AREA_ZIP_SHARE,
+                args.length > 4 ? Double.parseDouble(args[4]) : DEFAULT_SPARSE_RATE_AREA_SHARE,
+                args.length > 5 ? Long.parseLong(args[5]) : 1L);
+
+        final long start = System.currentTimeMillis();
+        dataset.writeTo(Paths.get(args[0]));
+        System.out.println("\nGenerated in " + (System.currentTimeMillis() - start) + "ms: Input files written to: "
+                + args[0] + "\n");
+    }
+
+    /**
+     * Write the files into the given directory, replacing any that are already there
+     *
+     * @param dir the directory to write to; created if it doesn't exist
+     * @throws IOException if a file can't be written
+     */
+    void writeTo(final Path dir) throws IOException {
+        Files.createDirectories(dir);
+        final SplittableRandom random = new SplittableRandom(seed);
+
+        final String[] rateAreaStates = new String[rateAreaCount];
+        final int[] rateAreaNumbers = new int[rateAreaCount];
+        final int[] firstRateAreaOfState = new int[STATE_CODES.length + 1];
+        assignRateAreas(rateAreaStates, rateAreaNumbers, firstRateAreaOfState);
+
+        final boolean[] sparse = new boolean[rateAreaCount];
+        for (int i = 0; i < rateAreaCount; i++) {
+            sparse[i] = random.nextDouble() < sparseRateAreaShare;
+        }
+        final long[] slcsp = writePlans(dir.resolve(SlcspIndex.PLANS_FILE_NAME), random, rateAreaStates,
+                rateAreaNumbers, sparse);
+
+        final int[] zips = pickZips(random);
+        final int[][] zipRateAreas = writeZips(dir.resolve(SlcspIndex.ZIPS_FILE_NAME), random, zips, rateAreaStates,
+                rateAreaNumbers, firstRateAreaOfState);
+
+        writeRequests(dir, random, zips, zipRateAreas, slcsp);
+    }
+
+    /**
+     * Spread the rate areas across the states, numbering them from 1 within each state
+     */
+    private void assignRateAreas(final String[] rateAreaStates, final int[] rateAreaNumbers,
+                                 final int[] firstRateAreaOfState) {
+        for (int state = 0; state <= STATE_CODES.length; state++) {
+            firstRateAreaOfState[state] = (int) ((long) rateAreaCount * state / STATE_CODES.length);
+        }
+        for (int state = 0; state < STATE_CODES.length; state++) {
+            for (int i = firstRateAreaOfState[state]; i < firstRateAreaOfState[state + 1]; i++) {
+                rateAreaStates[i] = STATE_CODES[state];
+                rateAreaNumbers[i] = i - firstRateAreaOfState[state] + 1;
+            }
+        }
+    }
+
+    /**
+     * Write plans.csv.  Every rate area that isn't sparse gets two distinct Silver plans, spread evenly through the
+     * file; a sparse one gets no Silver plan, one, or two at the same rate.  The rest of the plans are placed at
+     * random, and are never Silver for a sparse rate area.
+     *
+     * @return the SLCSP of each rate area, in cents, or {@link Rates#NO_RATE}
+     */
+    private long[] writePlans(final Path file, final SplittableRandom random, final String[] rateAreaStates,
+                              final int[] rateAreaNumbers, final boolean[] sparse) throws IOException {
+        final long[] lowest = new long[rateAreaCount];
+        final long[] secondLowest = new long[rateAreaCount];
+        Arrays.fill(lowest, NONE);
+        Arrays.fill(secondLowest, NONE);
+
+        // The Silver plans placed for each rate area, in order of rate area
+        int placedCount = 0;
+        final int[] placedRateAreas = new int[2 * rateAreaCount];
+        for (int i = 0; i < rateAreaCount; i++) {
+            final int silverPlans = sparse[i] ? random.nextInt(3) : 2;
+            for (int j = 0; j < silverPlans; j++) {
+                placedRateAreas[placedCount++] = i;
+            }
+        }
+        final int[] placedRates = new int[rateAreaCount];
+
+        try (
+                final Writer writer = newWriter(file)
+        ) {
+            writer.write("plan_id,state,metal_level,rate,rate_area\n");
+            int nextPlaced = 0;
+            for (int row = 0; row < planCount; row++) {
+                final int rateArea;
+                final String metalLevel;
+                int rateCents = MIN_RATE_CENTS + random.nextInt(MAX_RATE_CENTS - MIN_RATE_CENTS);
+                if (nextPlaced < placedCount && row == (long) nextPlaced * planCount / placedCount) {
+                    rateArea = placedRateAreas[nextPlaced++];
+                    metalLevel = "Silver";
+                    if (placedRates[rateArea] == 0) {
+                        placedRates[rateArea] = rateCents;
+                    } else if (sparse[rateArea]) {
+                        rateCents = placedRates[rateArea];
+                    } else if (rateCents == placedRates[rateArea]) {
+                        rateCents++;
+                    }
+                } else {
+                    rateArea = random.nextInt(rateAreaCount);
+                    metalLevel = !sparse[rateArea] && random.nextDouble() < SILVER_SHARE
+                            ? "Silver" : NON_SILVER_METAL_LEVELS[random.nextInt(NON_SILVER_METAL_LEVELS.length)];
+                }
+
+                if ("Silver".equals(metalLevel)) {
+                    if (rateCents < lowest[rateArea]) {
+                        secondLowest[rateArea] = lowest[rateArea];
+                        lowest[rateArea] = rateCents;
+                    } else if (rateCents > lowest[rateArea] && rateCents < secondLowest[rateArea]) {
+                        secondLowest[rateArea] = rateCents;
+                    }
+                }
+
+                writer.write(planId(random));
+                writer.write(',');
+                writer.write(rateAreaStates[rateArea]);
+                writer.write(',');
+                writer.write(metalLevel);
+                writer.write(',');
+                writer.write(String.format("%d.%02d", rateCents / 100, rateCents % 100));
+                writer.write(',');
+                writer.write(Integer.toString(rateAreaNumbers[rateArea]));
+                writer.write('\n');
+            }
+        }
+
+        final long[] slcsp = new long[rateAreaCount];
+        for (int i = 0; i < rateAreaCount; i++) {
+            slcsp[i] = secondLowest[i] == NONE ? Rates.NO_RATE : secondLowest[i];
+        }
+        return slcsp;
+    }
+
+    /**
+     * Pick zipCount distinct zip codes at random, in random order
+     */
+    private int[] pickZips(final SplittableRandom random) {
+        final int[] allZips = new int[ZipRateAreaTable.ZIP_CODE_SPACE];
+        for (int i = 0; i < allZips.length; i++) {
+            allZips[i] = i;
+        }
+        // A partial Fisher-Yates shuffle: the first zipCount entries end up a random selection.  The zip codes
+        // that aren't picked are kept after them, to draw unknown zip codes from.
+        for (int i = 0; i < Math.min(zipCount, allZips.length - 1); i++) {
+            final int j = i + random.nextInt(allZips.length - i);
+            final int swap = allZips[i];
+            allZips[i] = allZips[j];
+            allZips[j] = swap;
+        }
+        return allZips;
+    }
+
+    /**
+     * Write zips.csv.  Each zip code is in one rate area, or two (both in the same state, where it has more than
+     * one), and some zip codes are listed again for another county.
+     *
+     * @return the rate area(s) of each of the first zipCount zip codes, by position
+     */
+    private int[][] writeZips(final Path file, final SplittableRandom random, final int[] zips,
+                              final String[] rateAreaStates, final int[] rateAreaNumbers,
+                              final int[] firstRateAreaOfState) throws IOException {
+        final int[][] zipRateAreas = new int[zipCount][];
+        try (
+                final Writer writer = newWriter(file)
+        ) {
+            writer.write("zipcode,state,county_code,name,rate_area\n");
+            for (int i = 0; i < zipCount; i++) {
+                final int rateArea = random.nextInt(rateAreaCount);
+                int state = 0;
+                while (firstRateAreaOfState[state + 1] <= rateArea) {
+                    state++;
+                }
+                final int stateRateAreas = firstRateAreaOfState[state + 1] - firstRateAreaOfState[state];
+                if (random.nextDouble() < multiRateAreaZipShare && rateAreaCount > 1) {
+                    int otherRateArea = stateRateAreas > 1
+                            ? firstRateAreaOfState[state] + random.nextInt(stateRateAreas - 1)
+                            : random.nextInt(rateAreaCount - 1);
+                    if (otherRateArea >= rateArea) {
+                        otherRateArea++;
+                    }
+                    zipRateAreas[i] = new int[]{rateArea, otherRateArea};
+                } else {
+                    zipRateAreas[i] = new int[]{rateArea};
+                }
+
+                for (int rateAreaOfZip : zipRateAreas[i]) {
+                    do {
+                        final int county = random.nextInt(1000);
+                        writer.write(ZIP_CODES[zips[i]]);
+                        writer.write(',');
+                        writer.write(rateAreaStates[rateAreaOfZip]);
+                        writer.write(',');
+                        writer.write(ZIP_CODES[state * 1000 + county]);
+                        writer.write(",County ");
+                        writer.write(Integer.toString(county));
+                        writer.write(',');
+                        writer.write(Integer.toString(rateAreaNumbers[rateAreaOfZip]));
+                        writer.write('\n');
+                    } while (random.nextDouble() < EXTRA_COUNTY_SHARE);
+                }
+            }
+        }
+        return zipRateAreas;
+    }
+
+    /**
+     * Write slcsp.csv, its copy slcsp-original.csv, and slcsp-expected-result.csv.  Zip codes are requested at random,
+     * with repeats, and a few of them aren't in zips.csv at all.
+     */
+    private void writeRequests(final Path dir, final SplittableRandom random, final int[] zips,
+                               final int[][] zipRateAreas, final long[] slcsp) throws IOException {
+        final Path requestFile = dir.resolve("slcsp.csv");
+        try (
+                final Writer requestWriter = newWriter(requestFile);
+                final Writer expectedWriter = newWriter(dir.resolve("slcsp-expected-result.csv"))
+        ) {
+            final String lineSeparator = System.lineSeparator();
+            requestWriter.write("zipcode,rate\n");
+            expectedWriter.write("zipcode,rate");
+            expectedWriter.write(lineSeparator);
+            final int unknownZipCount = zips.length - zipCount;
+            for (long row = 0; row < requestRows; row++) {
+                final String zipCode;
+                long expectedRate = Rates.NO_RATE;
+                if (unknownZipCount > 0 && random.nextDouble() < UNKNOWN_REQUEST_SHARE) {
+                    zipCode = ZIP_CODES[zips[zipCount + random.nextInt(unknownZipCount)]];
+                } else {
+                    final int i = random.nextInt(zipCount);
+                    zipCode = ZIP_CODES[zips[i]];
+                    // A zip code in two rate areas still has an SLCSP if only one of them does
+                    int rateAreasWithSlcsp = 0;
+                    for (int rateArea : zipRateAreas[i]) {
+                        if (slcsp[rateArea] != Rates.NO_RATE) {
+                            expectedRate = slcsp[rateArea];
+                            rateAreasWithSlcsp++;
+                        }
+                    }
+                    if (rateAreasWithSlcsp != 1) {
+                        expectedRate = Rates.NO_RATE;
+                    }
+                }
+
+                requestWriter.write(zipCode);
+                requestWriter.write(",\n");
+                expectedWriter.write(zipCode);
+                expectedWriter.write(',');
+                if (expectedRate != Rates.NO_RATE) {
+                    expectedWriter.write(formatCents(expectedRate));
+                }
+                expectedWriter.write(lineSeparator);
+            }
+        }
+        Files.copy(requestFile, dir.resolve("slcsp-original.csv"), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Render a rate in cents as the results file should show it: the dollars, a decimal point, and the significant
+     * decimal places, but at least one (e.g. "245.2", "300.0")
+     */
+    private static String formatCents(final long cents) {
+        BigDecimal dollars = BigDecimal.valueOf(cents, 2).stripTrailingZeros();
+        if (dollars.scale() < 1) {
+            dollars = dollars.setScale(1);
+        }
+        return dollars.toPlainString();
+    }
+
+    /**
+     * @return a plan id in the style of the sample data, e.g. "74449NR9870320"
+     */
+    private static String planId(final SplittableRandom random) {
+        return String.format("%05d%c%c%07d", random.nextInt(100_000), (char) ('A' + random.nextInt(26)),
+                (char) ('A' + random.nextInt(26)), random.nextInt(10_000_000));
+    }
+
+    private static Writer newWriter(final Path file) throws IOException {
+        return new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.US_ASCII), 1 << 16);
+    }
+}
@@ -0,0 +1,123 @@
+package com.adhoc.slcsp;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+
+/**
+ * An immutable set of five-digit zip codes, held as a bitset over every possible zip code: 100,000 bits, or about
+ * 12KB, which stays in cache while zips.csv is scanned.
+ * <p>
+ * Zip codes are handled as their numeric value (e.g. "06239" is 6239), which lets a row be checked against the set
+ * straight from its leading bytes, with a single bit test, before anything is decoded or allocated.  The bitset is
+ * exact, so (unlike a Bloom filter) no row that passes needs checking again.
+ */
+final class ZipCodeSet {
+
+    private static final int ZIP_CODE_LENGTH = 5;
+
+    private static final ZipCodeSet ALL = new ZipCodeSet(null);
+
+    /**
+     * Bit n (bit n % 64 of word n / 64) is set if zip code n is in the set; null for the set of all zip codes
+     */
+    private final long[] zipBits;
+
+    private ZipCodeSet(final long[] zipBits) {
+        this.zipBits = zipBits;
+    }
+
+    /**
+     * @return the set of every five-digit zip code
+     */
+    static ZipCodeSet all() {
+        return ALL;
+    }
+
+    /**
+     * Build a set from the given zip code strings.  Entries that aren't five-digit zip codes are ignored, since they
+     * can never match a row.
+     */
+    static ZipCodeSet of(final Collection<String> zipCodes) {
+        final long[] zipBits = new long[(ZipRateAreaTable.ZIP_CODE_SPACE + Long.SIZE - 1) / Long.SIZE];
+        for (String zipCode : zipCodes) {
+            final int zip = parseZip(zipCode);
+            if (zip >= 0) {
+                zipBits[zip >>> 6] |= 1L << zip;
+            }
+        }
+        return new ZipCodeSet(zipBits);
+    }
+
+    /**
+     * @param zip the numeric value of a five-digit zip code
+     */
+    boolean contains(final int zip) {
+        return zipBits == null || (zipBits[zip >>> 6] & (1L << zip)) != 0;
+    }
+
+    /**
+     * @return the number of zip codes in the set
+     */
+    int size() {
+        if (zipBits == null) {
+            return ZipRateAreaTable.ZIP_CODE_SPACE;
+        }
+        int size = 0;
+        for (long word : zipBits) {
+            size += Long.bitCount(word);
+        }
+        return size;
+    }
+
+    /**
+     * @return the numeric values of the zip codes in the set, in ascending order
+     */
+    int[] toArray() {
+        final int[] zips = new int[size()];
+        int count = 0;
+        for (int zip = 0; zip < ZipRateAreaTable.ZIP_CODE_SPACE; zip++) {
+            if (contains(zip)) {
+                zips[count++] = zip;
+            }
+        }
+        return zips;
+    }
+
+    /**
+     * @return the numeric value of the given zip code, or -1 if it isn't exactly five digits
+     */
+    static int parseZip(final String zipCode) {
+        if (zipCode.length() != ZIP_CODE_LENGTH) {
+            return -1;
+        }
+        int zip = 0;
+        for (int i = 0; i < ZIP_CODE_LENGTH; i++) {
+            final int digit = zipCode.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            zip = zip * 10 + digit;
+        }
+        return zip;
+    }
+
+    /**
+     * @return the numeric value of the zip code in the given range, or -1 if it isn't exactly five digits
+     */
+    static int parseZip(final ByteBuffer buffer, final int start, final int end) {
+        return end - start == ZIP_CODE_LENGTH ? MappedCsvFile.parseNonNegativeInt(buffer, start, end) : -1;
+    }
+
+    /**
+     * @return the five-digit form of the given zip code, with any leading zeros
+     */
+    static String toZipCode(final int zip) {
+        final char[] digits = new char[ZIP_CODE_LENGTH];
+        int remaining = zip;
+        for (int i = ZIP_CODE_LENGTH - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+        return new String(digits);
+    }
+}
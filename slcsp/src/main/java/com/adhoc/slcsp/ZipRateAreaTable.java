@@ -0,0 +1,111 @@
+package com.adhoc.slcsp;
+
+import java.util.Arrays;
+
+/**
+ * The rate area(s) of each five-digit zip code, held in a dense primitive array indexed by the numeric zip code.
+ * <p>
+ * Each slot holds the id of the zip code's rate area, {@link #UNKNOWN} if the zip code hasn't been seen, or a marker
+ * for a zip code that is in more than one rate area.  The rate areas of those (relatively rare) ambiguous zip codes
+ * are kept to one side, since some of them may turn out to have no SLCSP.
+ */
+final class ZipRateAreaTable {
+
+    /**
+     * The number of slots: one for every possible five-digit zip code
+     */
+    static final int ZIP_CODE_SPACE = 100_000;
+
+    /**
+     * Returned for a zip code with no known rate area
+     */
+    static final int UNKNOWN = -1;
+
+    /**
+     * Returned for a zip code that is in more than one rate area
+     */
+    static final int AMBIGUOUS = -2;
+
+    /**
+     * Slots at or below this value point into ambiguousRateAreas: the slot value is AMBIGUOUS - index
+     */
+    private static final int FIRST_AMBIGUOUS_SLOT = AMBIGUOUS;
+
+    /**
+     * The space taken up by an array over and above its elements, give or take
+     */
+    private static final int ARRAY_HEADER_BYTES = 16;
+
+    private final int[] slots = new int[ZIP_CODE_SPACE];
+
+    private int[][] ambiguousRateAreas = new int[16][];
+    private int ambiguousCount;
+
+    ZipRateAreaTable() {
+        Arrays.fill(slots, UNKNOWN);
+    }
+
+    /**
+     * Record that the given zip code is (at least partly) in the given rate area.  Adding the same pair more than once
+     * has no further effect.
+     */
+    void add(final int zip, final int rateAreaId) {
+        final int slot = slots[zip];
+        if (slot == UNKNOWN) {
+            slots[zip] = rateAreaId;
+        } else if (slot >= 0) {
+            if (slot != rateAreaId) {
+                slots[zip] = newAmbiguousSlot(slot, rateAreaId);
+            }
+        } else {
+            final int index = FIRST_AMBIGUOUS_SLOT - slot;
+            final int[] rateAreas = ambiguousRateAreas[index];
+            for (int rateArea : rateAreas) {
+                if (rateArea == rateAreaId) {
+                    return;
+                }
+            }
+            final int[] extended = Arrays.copyOf(rateAreas, rateAreas.length + 1);
+            extended[rateAreas.length] = rateAreaId;
+            ambiguousRateAreas[index] = extended;
+        }
+    }
+
+    /**
+     * @return the id of the zip code's rate area, {@link #UNKNOWN}, or {@link #AMBIGUOUS}
+     */
+    int get(final int zip) {
+        final int slot = slots[zip];
+        return slot <= FIRST_AMBIGUOUS_SLOT ? AMBIGUOUS : slot;
+    }
+
+    /**
+     * @return the ids of all the zip code's rate areas.  Empty if the zip code has no known rate area.
+     */
+    int[] getAll(final int zip) {
+        final int slot = slots[zip];
+        if (slot == UNKNOWN) {
+            return new int[0];
+        }
+        return slot >= 0 ? new int[]{slot} : ambiguousRateAreas[FIRST_AMBIGUOUS_SLOT - slot].clone();
+    }
+
+    /**
+     * @return roughly how many bytes of heap the table takes up
+     */
+    long getFootprintBytes() {
+        long footprintBytes = (long) slots.length * Integer.BYTES + (long) ambiguousRateAreas.length * Long.BYTES;
+        for (int i = 0; i < ambiguousCount; i++) {
+            footprintBytes += ARRAY_HEADER_BYTES + (long) ambiguousRateAreas[i].length * Integer.BYTES;
+        }
+        return footprintBytes;
+    }
+
+    private int newAmbiguousSlot(final int firstRateAreaId, final int secondRateAreaId) {
+        if (ambiguousCount == ambiguousRateAreas.length) {
+            ambiguousRateAreas = Arrays.copyOf(ambiguousRateAreas, ambiguousCount * 2);
+        }
+        ambiguousRateAreas[ambiguousCount] = new int[]{firstRateAreaId, secondRateAreaId};
+        return FIRST_AMBIGUOUS_SLOT - ambiguousCount++;
+    }
+}
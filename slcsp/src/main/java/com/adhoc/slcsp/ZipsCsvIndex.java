@@ -0,0 +1,203 @@
+package com.adhoc.slcsp;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * An optional sidecar index over zips.csv: the zip code of every row, sorted, with the offset of the row in the file.
+ * When only a few zip codes are asked for, their rows can be found with a binary search each, rather than by reading
+ * the whole of zips.csv.
+ * <p>
+ * The index lives next to zips.csv, and is memory-mapped rather than read in.  It is laid out as follows
+ * (big-endian):
+ * <pre>
+ *   magic             8 bytes, "SLCSPZIX"
+ *   format version    int
+ *   zips.csv          long size, long last-modified millis
+ *   entries           int count, then count x (int zip, long row offset), sorted by zip and then offset
+ * </pre>
+ * The size and modification time of zips.csv are recorded, as for a {@link DatasetSnapshot}, so that an index that
+ * is older than zips.csv is ignored.  A change to zips.csv that keeps both the same (a same-length edit within the
+ * file system's timestamp resolution, or a restored modification time) goes unnoticed.
+ * <p>
+ * Rows whose zipcode isn't five digits are left out, as {@link ZipsCsvScanner} skips them.
+ */
+final class ZipsCsvIndex {
+
+    /**
+     * The name of the index file, in the same directory as zips.csv
+     */
+    static final String FILE_NAME = "zips.csv.idx";
+
+    private static final byte[] MAGIC = "SLCSPZIX".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_BYTES = MAGIC.length + Integer.BYTES + 2 * Long.BYTES + Integer.BYTES;
+
+    private static final int ENTRY_BYTES = Integer.BYTES + Long.BYTES;
+
+    /**
+     * While the index is built, each entry is packed into a single long, the zip code above the row offset.  Zip codes
+     * need 17 bits, which (keeping the sign bit clear, so that the longs sort as intended) leaves room for row offsets
+     * into a file of up to 2^46 bytes.
+     */
+    private static final int ROW_OFFSET_BITS = 46;
+
+    private static final long ROW_OFFSET_MASK = (1L << ROW_OFFSET_BITS) - 1;
+
+    private final MappedByteBuffer buffer;
+    private final int entryCount;
+
+    private ZipsCsvIndex(final MappedByteBuffer buffer, final int entryCount) {
+        this.buffer = buffer;
+        this.entryCount = entryCount;
+    }
+
+    /**
+     * Open the index of the given zips.csv file, if it has one that is up to date
+     *
+     * @param zipsFile the zips.csv file
+     * @return the index, or null if there is no index, or it is older than zips.csv or in another format
+     * @throws IOException if the index can't be read
+     */
+    static ZipsCsvIndex openIfCurrent(final Path zipsFile) throws IOException {
+        final Path indexFile = zipsFile.resolveSibling(FILE_NAME);
+        if (!Files.exists(indexFile) || !Files.exists(zipsFile)) {
+            return null;
+        }
+        final MappedByteBuffer buffer;
+        try (
+                final FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)
+        ) {
+            if (channel.size() < HEADER_BYTES) {
+                return null;
+            }
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalStateException("'" + indexFile + "' is corrupt: it is too long to be an index");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        final byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+        if (!Arrays.equals(MAGIC, magic) || buffer.getInt() != FORMAT_VERSION
+                || !DatasetSnapshot.SourceFingerprint.readFrom(buffer)
+                .equals(DatasetSnapshot.SourceFingerprint.of(zipsFile))) {
+            return null;
+        }
+        final int entryCount = buffer.getInt();
+        if (buffer.limit() != HEADER_BYTES + (long) entryCount * ENTRY_BYTES) {
+            throw new IllegalStateException("'" + indexFile + "' is corrupt: its length doesn't match its entries");
+        }
+        return new ZipsCsvIndex(buffer, entryCount);
+    }
+
+    /**
+     * Write the index of the given zips.csv file, next to it.  The index is written to a temporary file first, and
+     * then moved into place, so a reader never sees a partly-written index.
+     *
+     * @param zipsFile the zips.csv file
+     * @return the index file
+     * @throws IOException           if zips.csv can't be read, or the index can't be written
+     * @throws IllegalStateException if zips.csv has too many rows to index
+     */
+    static Path write(final Path zipsFile) throws IOException {
+        // zips.csv is fingerprinted before it is read, so that one replaced while it's being read leaves the index
+        // out of date from the start
+        final DatasetSnapshot.SourceFingerprint zipsFingerprint = DatasetSnapshot.SourceFingerprint.of(zipsFile);
+
+        // sorting the packed entries orders them by zip code, and then by row offset
+        final long[] entries = collectEntries(zipsFile);
+        Arrays.sort(entries);
+        if (HEADER_BYTES + (long) entries.length * ENTRY_BYTES > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Problem indexing file ('" + zipsFile + "'): its " + entries.length
+                    + " rows are too many for an index that can be memory-mapped");
+        }
+
+        final Path indexFile = zipsFile.resolveSibling(FILE_NAME);
+        final Path tempFile = indexFile.resolveSibling(FILE_NAME + ".tmp");
+        try (
+                final OutputStream fileOutputStream = Files.newOutputStream(tempFile);
+                final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOutputStream))
+        ) {
+            out.write(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            zipsFingerprint.writeTo(out);
+            out.writeInt(entries.length);
+            for (long entry : entries) {
+                out.writeInt((int) (entry >>> ROW_OFFSET_BITS));
+                out.writeLong(entry & ROW_OFFSET_MASK);
+            }
+        }
+        Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return indexFile;
+    }
+
+    private static long[] collectEntries(final Path zipsFile) throws IOException {
+        final MappedCsvFile file = new MappedCsvFile(zipsFile);
+        final long[][] entries = {new long[1024]};
+        final int[] entryCount = new int[1];
+        file.forEachDataRow((buffer, start, end, rowOffset) -> {
+            final int firstComma = MappedCsvFile.indexOf(buffer, start, end, (byte) ',');
+            if (firstComma < 0) {
+                throw new IllegalStateException("Malformed row in '" + zipsFile + "': "
+                        + MappedCsvFile.rowToString(buffer, start, end));
+            }
+            final int zip = ZipCodeSet.parseZip(buffer, start, firstComma);
+            if (zip < 0) {
+                // never looked up, so not worth an entry
+                return;
+            }
+            if (entryCount[0] == entries[0].length) {
+                entries[0] = Arrays.copyOf(entries[0], entryCount[0] * 2);
+            }
+            entries[0][entryCount[0]++] = (long) zip << ROW_OFFSET_BITS | rowOffset;
+        });
+        return Arrays.copyOf(entries[0], entryCount[0]);
+    }
+
+    /**
+     * Hand the offset of each row of the given zip code in zips.csv to the given consumer, in file order
+     *
+     * @param zip the numeric value of the zip code
+     */
+    void forEachRowOffset(final int zip, final LongConsumer rowOffsetConsumer) {
+        // find the first entry for the zip code
+        int low = 0;
+        int high = entryCount;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (zipAt(middle) < zip) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        for (int entry = low; entry < entryCount && zipAt(entry) == zip; entry++) {
+            rowOffsetConsumer.accept(buffer.getLong(entryOffset(entry) + Integer.BYTES));
+        }
+    }
+
+    private int zipAt(final int entry) {
+        return buffer.getInt(entryOffset(entry));
+    }
+
+    /**
+     * @return the offset of the given entry in the index.  A mapped index is never longer than Integer.MAX_VALUE
+     * bytes, but the offset is worked out as a long so that one that would be is an error rather than a wrong entry.
+     */
+    private static int entryOffset(final int entry) {
+        return Math.toIntExact(HEADER_BYTES + (long) entry * ENTRY_BYTES);
+    }
+}
@@ -0,0 +1,164 @@
+package com.adhoc.slcsp;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Picks the zip code to rate area relationships out of zips.csv, working directly on the bytes of the memory-mapped
+ * file.
+ * <p>
+ * Each row's leading zipcode bytes are checked against the set of requested zip codes first; rows for any other zip
+ * code are thrown away before the rest of the row is even looked at.
+ * <p>
+ * When only a few zip codes are requested, and zips.csv has an up-to-date {@link ZipsCsvIndex}, just their rows are
+ * read instead, each found with a binary search of the index.
+ */
+final class ZipsCsvScanner {
+
+    /**
+     * The number of requested zip codes above which the whole file is scanned, even if it has an index
+     */
+    static final int MAX_INDEXED_ZIPS = 512;
+
+    /**
+     * Enough room for a typical row of the file; longer rows are read in several goes
+     */
+    private static final int ROW_BUFFER_BYTES = 256;
+
+    private final MappedCsvFile file;
+
+    /**
+     * Receives the zip code to rate area relationships found in the file
+     */
+    interface ZipRateAreaHandler {
+        /**
+         * @param zip        the numeric value of the zip code
+         * @param rateAreaId the id of the rate area the zip code is (at least partly) in
+         */
+        void onZipRateArea(int zip, int rateAreaId);
+    }
+
+    ZipsCsvScanner(final Path path) {
+        this.file = new MappedCsvFile(path);
+    }
+
+    /**
+     * Hand every row for one of the requested zip codes to the given handler
+     *
+     * @param requestedZips the zip codes of interest
+     * @param handler       receives the rows for the requested zip codes
+     * @param metrics       the stage the scan is part of
+     * @throws IOException if the file can't be read
+     */
+    void scan(final ZipCodeSet requestedZips, final ZipRateAreaHandler handler,
+              final StageMetrics metrics) throws IOException {
+        file.forEachDataRow((buffer, start, end) -> parseRow(buffer, start, end, requestedZips, handler), metrics);
+    }
+
+    /**
+     * As {@link #scan}, but reading only the rows of the requested zip codes, if there are few of them and the file
+     * has an up-to-date index.  Otherwise, the whole file is scanned.
+     */
+    void scanIndexedIfPossible(final ZipCodeSet requestedZips, final ZipRateAreaHandler handler,
+                               final StageMetrics metrics) throws IOException {
+        final ZipsCsvIndex index = requestedZips != ZipCodeSet.all() && requestedZips.size() <= MAX_INDEXED_ZIPS
+                ? ZipsCsvIndex.openIfCurrent(file.getPath())
+                : null;
+        if (index == null) {
+            scan(requestedZips, handler, metrics);
+            return;
+        }
+        metrics.setDataset(file.getPath().toString());
+        try (
+                final FileChannel channel = FileChannel.open(file.getPath(), StandardOpenOption.READ)
+        ) {
+            final ByteBuffer[] rowBuffer = {ByteBuffer.allocate(ROW_BUFFER_BYTES)};
+            for (int zip : requestedZips.toArray()) {
+                index.forEachRowOffset(zip, rowOffset -> {
+                    try {
+                        rowBuffer[0] = readRow(channel, rowOffset, rowBuffer[0]);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    parseRow(rowBuffer[0], 0, rowBuffer[0].limit(), requestedZips, handler);
+                    metrics.addRows(1);
+                    metrics.addBytes(rowBuffer[0].limit());
+                });
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Read the row starting at the given offset into the given buffer (or a larger one, if the row doesn't fit)
+     *
+     * @return the buffer holding the row, from index 0 up to its limit, not including the line terminator
+     */
+    private static ByteBuffer readRow(final FileChannel channel, final long rowOffset,
+                                      final ByteBuffer buffer) throws IOException {
+        ByteBuffer rowBuffer = buffer;
+        rowBuffer.clear();
+        int searched = 0;
+        while (true) {
+            final int read = channel.read(rowBuffer, rowOffset + rowBuffer.position());
+            for (int i = searched; i < rowBuffer.position(); i++) {
+                if (rowBuffer.get(i) == '\n') {
+                    rowBuffer.limit(i > 0 && rowBuffer.get(i - 1) == '\r' ? i - 1 : i);
+                    rowBuffer.position(0);
+                    return rowBuffer;
+                }
+            }
+            searched = rowBuffer.position();
+            if (read < 0) {
+                // final row, with no line terminator
+                rowBuffer.flip();
+                return rowBuffer;
+            }
+            if (!rowBuffer.hasRemaining()) {
+                final ByteBuffer larger = ByteBuffer.allocate(rowBuffer.capacity() * 2);
+                rowBuffer.flip();
+                larger.put(rowBuffer);
+                rowBuffer = larger;
+            }
+        }
+    }
+
+    private void parseRow(final ByteBuffer buffer, final int start, final int end, final ZipCodeSet requestedZips,
+                          final ZipRateAreaHandler handler) {
+        /*
+            zipcode,state,county_code,name,rate_area
+            36749,AL,01001,Autauga,11
+         */
+        final byte delimiter = ',';
+        final int firstComma = MappedCsvFile.indexOf(buffer, start, end, delimiter);
+        if (firstComma < 0) {
+            throw malformedRow(buffer, start, end);
+        }
+        final int zip = ZipCodeSet.parseZip(buffer, start, firstComma);
+        if (zip < 0 || !requestedZips.contains(zip)) {
+            return;
+        }
+
+        final int secondComma = MappedCsvFile.indexOf(buffer, firstComma + 1, end, delimiter);
+        final int thirdComma = MappedCsvFile.indexOf(buffer, secondComma + 1, end, delimiter);
+        final int fourthComma = MappedCsvFile.indexOf(buffer, thirdComma + 1, end, delimiter);
+        if (secondComma < 0 || thirdComma < 0 || fourthComma < 0) {
+            throw malformedRow(buffer, start, end);
+        }
+        final int rateAreaId = RateAreaIds.parse(buffer, firstComma + 1, secondComma, fourthComma + 1, end);
+        if (rateAreaId < 0) {
+            throw malformedRow(buffer, start, end);
+        }
+        handler.onZipRateArea(zip, rateAreaId);
+    }
+
+    private IllegalStateException malformedRow(final ByteBuffer buffer, final int start, final int end) {
+        return new IllegalStateException("Malformed row in '" + file.getPath() + "': "
+                + MappedCsvFile.rowToString(buffer, start, end));
+    }
+}
@@ -0,0 +1,58 @@
+package com.adhoc.slcsp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class DataDirectoryWatcherTest {
+
+    private static final String DATA_DIR = "../data";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+
+    @Test
+    public void replacedPlansFileIsReloaded() throws Exception {
+        final Path dataDir = temporaryFolder.newFolder().toPath();
+        for (String fileName : new String[]{"plans.csv", "zips.csv"}) {
+            Files.copy(Paths.get(DATA_DIR, fileName), dataDir.resolve(fileName));
+        }
+        final BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+        try (
+                final ReloadableSlcspIndex reloadableIndex = ReloadableSlcspIndex.load(dataDir);
+                final DataDirectoryWatcher watcher = new DataDirectoryWatcher(reloadableIndex, dataDir, 200,
+                        messages::add)
+        ) {
+            watcher.start();
+            assertEquals("245.2", SlcspIndex.formatRate(reloadableIndex.current().lookup("64148")));
+
+            // written alongside, then moved into place, as a deployment would
+            final Path newPlansFile = temporaryFolder.newFile("plans.csv.new").toPath();
+            Files.write(newPlansFile, Arrays.asList(
+                    "plan_id,state,metal_level,rate,rate_area",
+                    "35866RG6997149,MO,Silver,234.6,3",
+                    "53546TY7687603,MO,Silver,251.08,3"));
+            Files.move(newPlansFile, dataDir.resolve("plans.csv"), StandardCopyOption.REPLACE_EXISTING);
+
+            final String message = messages.poll(30, TimeUnit.SECONDS);
+            assertNotNull("The index wasn't reloaded", message);
+            assertTrue(message, message.startsWith("Reloaded plans.csv in "));
+            assertEquals("251.08", SlcspIndex.formatRate(reloadableIndex.current().lookup("64148")));
+        }
+    }
+}
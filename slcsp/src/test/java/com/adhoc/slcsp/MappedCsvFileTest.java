@@ -0,0 +1,143 @@
+package com.adhoc.slcsp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class MappedCsvFileTest {
+
+    private static final int ROW_COUNT = 200_000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+
+    @Test
+    public void parallelChunksSeeEveryRowExactlyOnce() throws Exception {
+        final File file = temporaryFolder.newFile("rows.csv");
+        long expectedSum = 0;
+        try (
+                final PrintWriter writer = new PrintWriter(file, "UTF-8")
+        ) {
+            writer.print("value,padding\n");
+            for (int i = 0; i < ROW_COUNT; i++) {
+                // the last row has no line terminator
+                writer.print(i + ",xxxxxxxx" + (i < ROW_COUNT - 1 ? "\n" : ""));
+                expectedSum += i;
+            }
+        }
+
+        // more chunks than this machine may have cores, to be sure the chunk boundaries get exercised
+        final StageMetrics metrics = StageMetrics.start("test");
+        final List<RowSummer> summers = new MappedCsvFile(file.toPath()).forEachDataRowInParallel(RowSummer::new, 8, metrics);
+        metrics.stop();
+
+        long rows = 0;
+        long sum = 0;
+        for (RowSummer summer : summers) {
+            rows += summer.rows;
+            sum += summer.sum;
+        }
+        assertEquals(8, summers.size());
+        assertEquals(ROW_COUNT, rows);
+        assertEquals(expectedSum, sum);
+        assertEquals(ROW_COUNT, metrics.toReport().getRows());
+        assertEquals(file.length() - "value,padding\n".length(), metrics.toReport().getBytes());
+    }
+
+    @Test
+    public void chunksOfCrlfRowsEndOnTheLineFeed() throws Exception {
+        final File file = temporaryFolder.newFile("crlf.csv");
+        long expectedSum = 0;
+        try (
+                final PrintWriter writer = new PrintWriter(file, "UTF-8")
+        ) {
+            writer.print("value,padding\r\n");
+            for (int i = 0; i < ROW_COUNT; i++) {
+                writer.print(i + ",xxxxxxxx\r\n");
+                expectedSum += i;
+            }
+        }
+
+        // several chunk counts, so that the boundaries fall at different points of the rows (including between the
+        // carriage return and the line feed)
+        for (int maxChunks : new int[]{2, 3, 5, 7, 8}) {
+            final List<RowSummer> summers =
+                    new MappedCsvFile(file.toPath()).forEachDataRowInParallel(RowSummer::new, maxChunks, StageMetrics.NONE);
+
+            long rows = 0;
+            long sum = 0;
+            for (RowSummer summer : summers) {
+                assertEquals(maxChunks + " chunks", 0, summer.rowsEndingInCarriageReturn);
+                rows += summer.rows;
+                sum += summer.sum;
+            }
+            assertEquals(maxChunks, summers.size());
+            assertEquals(maxChunks + " chunks", ROW_COUNT, rows);
+            assertEquals(maxChunks + " chunks", expectedSum, sum);
+        }
+    }
+
+    @Test
+    public void lastRowWithoutALineFeedIsStillARow() throws Exception {
+        for (String lastRow : new String[]{"2,x", "2,x\r"}) {
+            final File file = temporaryFolder.newFile();
+            try (
+                    final PrintWriter writer = new PrintWriter(file, "UTF-8")
+            ) {
+                writer.print("value,padding\r\n1,x\r\n" + lastRow);
+            }
+
+            final RowSummer summer = new RowSummer();
+            new MappedCsvFile(file.toPath()).forEachDataRow(summer);
+            final List<RowSummer> summers =
+                    new MappedCsvFile(file.toPath()).forEachDataRowInParallel(RowSummer::new, 8, StageMetrics.NONE);
+
+            assertEquals(lastRow, 2, summer.rows);
+            assertEquals(lastRow, 3, summer.sum);
+            assertEquals(lastRow, 0, summer.rowsEndingInCarriageReturn);
+            assertEquals("a small file is a single chunk", 1, summers.size());
+            assertEquals(lastRow, 3, summers.get(0).sum);
+        }
+    }
+
+    @Test
+    public void headerWithoutALineFeedHasNoRows() throws Exception {
+        final File file = temporaryFolder.newFile("header.csv");
+        try (
+                final PrintWriter writer = new PrintWriter(file, "UTF-8")
+        ) {
+            writer.print("value,padding");
+        }
+
+        final List<RowSummer> summers =
+                new MappedCsvFile(file.toPath()).forEachDataRowInParallel(RowSummer::new, 8, StageMetrics.NONE);
+
+        assertEquals(1, summers.size());
+        assertEquals(0, summers.get(0).rows);
+    }
+
+
+    private static class RowSummer implements MappedCsvFile.RowHandler {
+        long rows;
+        long sum;
+        long rowsEndingInCarriageReturn;
+
+        @Override
+        public void onRow(final ByteBuffer buffer, final int start, final int end) {
+            rows++;
+            sum += MappedCsvFile.parseNonNegativeInt(buffer, start, MappedCsvFile.indexOf(buffer, start, end, (byte) ','));
+            if (buffer.get(end - 1) == '\r') {
+                rowsEndingInCarriageReturn++;
+            }
+        }
+    }
+}
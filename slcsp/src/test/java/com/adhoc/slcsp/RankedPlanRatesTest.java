@@ -0,0 +1,101 @@
+package com.adhoc.slcsp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+
+public class RankedPlanRatesTest {
+
+    private static final Path PLANS_FILE = Paths.get("../data", "plans.csv");
+
+    private static final int MAX_RANK = 3;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+
+    @Test
+    public void secondLowestSilverIsTheSlcsp() {
+        final RankedPlanRates rankedPlanRates = RankedPlanRates.fromFile(PLANS_FILE, MAX_RANK);
+
+        assertArrayEquals(SlcspIndex.buildRateAreaToSlcspTable(PLANS_FILE),
+                rankedPlanRates.toRateAreaTable(MetalLevel.SILVER, 2));
+        assertEquals("234.6", SlcspIndex.formatRate(rankedPlanRates.getRate(MetalLevel.SILVER, 1, "MO", 3)));
+        assertEquals("245.2", SlcspIndex.formatRate(rankedPlanRates.getRate(MetalLevel.SILVER, 2, "MO", 3)));
+    }
+
+    @Test
+    public void everyMetalLevelAndRankMatchesASortOfThePlans() throws Exception {
+        assertMatchesASortOfThePlans(MAX_RANK);
+    }
+
+    @Test
+    public void highestMaximumRankMatchesASortOfThePlans() throws Exception {
+        assertMatchesASortOfThePlans(RankedPlanRates.MAX_RANK);
+    }
+
+    @Test
+    public void plansOfUnknownMetalLevelsAreSkipped() throws Exception {
+        final Path plansFile = temporaryFolder.newFile("plans.csv").toPath();
+        Files.write(plansFile, Arrays.asList(
+                "plan_id,state,metal_level,rate,rate_area",
+                "00000AA0000001,MO,Bronze,200.00,3",
+                "00000AA0000002,MO,Expanded Bronze,150.00,3",
+                "00000AA0000003,MO,Platinum ,100.00,3",
+                "00000AA0000004,MO,Platinum,400.00,3"));
+
+        final RankedPlanRates rankedPlanRates = RankedPlanRates.fromFile(plansFile, MAX_RANK);
+
+        assertEquals("200.0", SlcspIndex.formatRate(rankedPlanRates.getRate(MetalLevel.BRONZE, 1, "MO", 3)));
+        assertEquals(SlcspIndex.NO_SLCSP, rankedPlanRates.getRate(MetalLevel.BRONZE, 2, "MO", 3));
+        assertEquals("400.0", SlcspIndex.formatRate(rankedPlanRates.getRate(MetalLevel.PLATINUM, 1, "MO", 3)));
+        assertEquals(SlcspIndex.NO_SLCSP, rankedPlanRates.getRate(MetalLevel.PLATINUM, 2, "MO", 3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rankAboveTheMaximumIsRejected() {
+        RankedPlanRates.fromFile(PLANS_FILE, MAX_RANK).getRate(MetalLevel.GOLD, MAX_RANK + 1, "MO", 3);
+    }
+
+
+    private static void assertMatchesASortOfThePlans(final int maxRank) throws Exception {
+        // the distinct rates of each metal level and rate area, worked out the slow way
+        final Map<String, TreeSet<BigDecimal>> distinctRates = new HashMap<>();
+        final List<String> rows = Files.readAllLines(PLANS_FILE);
+        for (String row : rows.subList(1, rows.size())) {
+            final String[] fields = row.split(",");
+            distinctRates.computeIfAbsent(fields[2] + "," + fields[1] + "," + fields[4], key -> new TreeSet<>())
+                    .add(new BigDecimal(fields[3]));
+        }
+
+        final RankedPlanRates rankedPlanRates = RankedPlanRates.fromFile(PLANS_FILE, maxRank);
+
+        for (Map.Entry<String, TreeSet<BigDecimal>> rates : distinctRates.entrySet()) {
+            final String[] key = rates.getKey().split(",");
+            final MetalLevel metalLevel = MetalLevel.valueOf(key[0].toUpperCase());
+            final List<BigDecimal> sortedRates = new ArrayList<>(rates.getValue());
+            for (int rank = 1; rank <= maxRank; rank++) {
+                final long expected = rank <= sortedRates.size()
+                        ? sortedRates.get(rank - 1).movePointRight(7).longValueExact()
+                        : SlcspIndex.NO_SLCSP;
+                assertEquals(rates.getKey() + " rank " + rank, expected,
+                        rankedPlanRates.getRate(metalLevel, rank, key[1], Integer.parseInt(key[2])));
+            }
+        }
+    }
+}
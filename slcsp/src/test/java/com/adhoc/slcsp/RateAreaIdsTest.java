@@ -0,0 +1,59 @@
+package com.adhoc.slcsp;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class RateAreaIdsTest {
+
+    @Test
+    public void idsRoundTripToTheirCode() {
+        assertEquals("MO3", RateAreaIds.toCode(RateAreaIds.of("MO", 3)));
+        assertEquals("GA7", RateAreaIds.toCode(RateAreaIds.of("GA", 7)));
+        assertEquals("AA0", RateAreaIds.toCode(RateAreaIds.of("AA", 0)));
+        assertEquals("ZZ127", RateAreaIds.toCode(RateAreaIds.of("ZZ", 127)));
+    }
+
+    @Test
+    public void idsFillTheIdSpace() {
+        assertEquals(0, RateAreaIds.of("AA", 0));
+        assertEquals(RateAreaIds.ID_SPACE - 1, RateAreaIds.of("ZZ", 127));
+    }
+
+    @Test
+    public void rateAreaNumbersMustBeLessThan128() {
+        assertEquals(-1, RateAreaIds.of("MO", 128));
+        assertEquals(-1, RateAreaIds.of("MO", -1));
+        assertEquals(-1, parse("MO", "128"));
+    }
+
+    @Test
+    public void statesMustBeTwoUpperCaseLetters() {
+        assertEquals(-1, RateAreaIds.of("mo", 3));
+        assertEquals(-1, RateAreaIds.of("M", 3));
+        assertEquals(-1, RateAreaIds.of("MOO", 3));
+        assertEquals(-1, RateAreaIds.of("M@", 3));
+        assertEquals(-1, RateAreaIds.of("[O", 3));
+        assertEquals(-1, RateAreaIds.of(null, 3));
+    }
+
+    @Test
+    public void parsesTheSameIdsAsOf() {
+        assertEquals(RateAreaIds.of("MO", 3), parse("MO", "3"));
+        assertEquals(RateAreaIds.of("ZZ", 127), parse("ZZ", "127"));
+        assertEquals(-1, parse("MOO", "3"));
+        assertEquals(-1, parse("MO", ""));
+        assertEquals(-1, parse("MO", "3a"));
+        assertEquals(-1, parse("MO", "-3"));
+    }
+
+
+    private static int parse(final String state, final String rateAreaNumber) {
+        final byte[] row = (state + "," + rateAreaNumber).getBytes(StandardCharsets.US_ASCII);
+        return RateAreaIds.parse(ByteBuffer.wrap(row), 0, state.length(), state.length() + 1, row.length);
+    }
+}
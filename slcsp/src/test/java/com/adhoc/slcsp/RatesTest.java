@@ -0,0 +1,93 @@
+package com.adhoc.slcsp;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class RatesTest {
+
+    @Test
+    public void rendersWholeCentRatesAsFloatToStringDoes() {
+        for (String rate : new String[]{"245.2", "212.35", "300", "0.01", "1234.50", "99.99"}) {
+            assertEquals(Float.toString(Float.parseFloat(rate)), Rates.toString(parse(rate)));
+        }
+    }
+
+    @Test
+    public void keepsSevenDecimalPlacesExactly() {
+        assertEquals(3610751527L, parse("361.0751527"));
+        assertEquals("361.0751527", Rates.toString(parse("361.0751527")));
+        assertEquals("363.25884", Rates.toString(parse("363.25884")));
+    }
+
+    @Test
+    public void roundsBeyondSevenDecimalPlaces() {
+        assertEquals(parse("1.0000001"), parse("1.00000005"));
+        assertEquals(parse("1.0"), parse("0.99999999"));
+        assertEquals(parse("1.0000000"), parse("1.00000004"));
+    }
+
+    @Test
+    public void roundingCarriesIntoTheWholeDollars() {
+        assertEquals(parse("10"), parse("9.99999995"));
+        assertEquals("10.0", Rates.toString(parse("9.99999995")));
+        // only the first digit past the seventh decides the rounding
+        assertEquals(parse("1.0"), parse("1.000000049999"));
+    }
+
+    @Test
+    public void acceptsAMissingWholeOrFractionPart() {
+        assertEquals(5_000_000L, parse(".5"));
+        assertEquals(5 * Rates.UNITS_PER_DOLLAR, parse("5."));
+    }
+
+    @Test
+    public void acceptsElevenWholeDollarDigitsAndNoMore() {
+        assertEquals(99_999_999_999L * Rates.UNITS_PER_DOLLAR, parse("99999999999"));
+        assertEquals(Rates.NO_RATE, parse("100000000000"));
+        assertEquals(Rates.NO_RATE, parse("100000000000.00"));
+    }
+
+    @Test
+    public void parsesOnlyTheGivenRange() {
+        final byte[] row = "74449NR9870320,GA,Silver,298.62,7".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(parse("298.62"), Rates.parse(ByteBuffer.wrap(row), 25, 31));
+        assertEquals(Rates.NO_RATE, Rates.parse(ByteBuffer.wrap(row), 25, 33));
+    }
+
+    @Test
+    public void rejectsAnythingButAPlainDecimalNumber() {
+        assertEquals(Rates.NO_RATE, parse(""));
+        assertEquals(Rates.NO_RATE, parse("."));
+        assertEquals(Rates.NO_RATE, parse("-1.5"));
+        assertEquals(Rates.NO_RATE, parse("1.2.3"));
+        assertEquals(Rates.NO_RATE, parse("rate"));
+        assertEquals(Rates.NO_RATE, parse("+1.5"));
+        assertEquals(Rates.NO_RATE, parse(" 1.5"));
+        assertEquals(Rates.NO_RATE, parse("1.5 "));
+        assertEquals(Rates.NO_RATE, parse("1,5"));
+        assertEquals(Rates.NO_RATE, parse("1e3"));
+        assertEquals(Rates.NO_RATE, parse("1.00000005x"));
+    }
+
+    @Test
+    public void putsTheSameTextAsToString() {
+        final ByteBuffer buffer = ByteBuffer.allocate(Rates.MAX_ENCODED_BYTES);
+        for (String rate : new String[]{"245.2", "300", "0.01", "361.0751527", "99999999999.9999999"}) {
+            buffer.clear();
+            Rates.putTo(buffer, parse(rate));
+            assertEquals(Rates.toString(parse(rate)),
+                    new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII));
+        }
+    }
+
+
+    private static long parse(final String rate) {
+        final byte[] bytes = rate.getBytes(StandardCharsets.US_ASCII);
+        return Rates.parse(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+}
@@ -0,0 +1,247 @@
+package com.adhoc.slcsp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+
+public class ReloadableSlcspIndexTest {
+
+    private static final String DATA_DIR = "../data";
+
+    /**
+     * Takes the cheapest Silver plan out of rate area MO 3, and makes another one cheaper still
+     */
+    private static final List<String> MO_3_DELTA = Arrays.asList(
+            "op,plan_id,state,metal_level,rate,rate_area",
+            "remove,35866RG6997149,MO,Silver,234.6,3",
+            "remove,02345TB1383341,MO,Silver,245.2,3",
+            "add,02345TB1383341,MO,Silver,230.00,3");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+
+    @Test
+    public void reloadPublishesTheNewIndex() {
+        try (
+                final ReloadableSlcspIndex reloadableIndex = ReloadableSlcspIndex.load(Paths.get(DATA_DIR))
+        ) {
+            final SlcspIndex before = reloadableIndex.current();
+
+            final SlcspIndex reloaded = reloadableIndex.reload().join();
+
+            assertNotSame(before, reloaded);
+            assertSame(reloaded, reloadableIndex.current());
+            assertEquals(before.lookup("64148"), reloaded.lookup("64148"));
+        }
+    }
+
+    @Test
+    public void planDeltaMatchesAFullRebuild() throws Exception {
+        final Path dataDir = copyOfDataDir();
+        final Path deltaFile = temporaryFolder.newFile("mo-3.delta.csv").toPath();
+        Files.write(deltaFile, MO_3_DELTA);
+        try (
+                final ReloadableSlcspIndex reloadableIndex = ReloadableSlcspIndex.load(dataDir)
+        ) {
+            final SlcspIndex before = reloadableIndex.current();
+
+            final SlcspIndex changed = reloadableIndex.applyPlanDelta(deltaFile).join();
+
+            assertSame(changed, reloadableIndex.current());
+            assertEquals("245.2", SlcspIndex.formatRate(before.lookup("64148")));
+            assertEquals("251.08", SlcspIndex.formatRate(changed.lookup("64148")));
+            assertEquals(before.getDatasetVersion() + "+mo-3.delta.csv", changed.getDatasetVersion());
+            assertEquals(before.getPlanRows() - 1, changed.getPlanRows());
+
+            // the same correction made to plans.csv itself
+            final List<String> correctedPlans = Files.readAllLines(dataDir.resolve("plans.csv")).stream()
+                    .filter(row -> !row.startsWith("35866RG6997149,") && !row.startsWith("02345TB1383341,"))
+                    .collect(Collectors.toList());
+            correctedPlans.add("02345TB1383341,MO,Silver,230.00,3");
+            final Path correctedPlansFile = temporaryFolder.newFile("plans.csv").toPath();
+            Files.write(correctedPlansFile, correctedPlans);
+            final SlcspIndex rebuilt = SlcspIndex.fromFiles(correctedPlansFile, dataDir.resolve("zips.csv"));
+
+            for (int zip = 0; zip < 100_000; zip++) {
+                final String zipCode = String.format("%05d", zip);
+                assertEquals(zipCode, rebuilt.lookup(zipCode), changed.lookup(zipCode));
+            }
+        }
+    }
+
+    @Test
+    public void failedPlanDeltaKeepsTheCurrentIndex() throws Exception {
+        final Path dataDir = copyOfDataDir();
+        final Path badDeltaFile = temporaryFolder.newFile("bad.delta.csv").toPath();
+        Files.write(badDeltaFile, Arrays.asList(
+                "op,plan_id,state,metal_level,rate,rate_area",
+                "remove,35866RG6997149,MO,Silver,234.6,3",
+                "remove,00000XX0000000,MO,Silver,1.00,3"));
+        final Path deltaFile = temporaryFolder.newFile("mo-3.delta.csv").toPath();
+        Files.write(deltaFile, MO_3_DELTA);
+        try (
+                final ReloadableSlcspIndex reloadableIndex = ReloadableSlcspIndex.load(dataDir)
+        ) {
+            final SlcspIndex before = reloadableIndex.current();
+
+            try {
+                reloadableIndex.applyPlanDelta(badDeltaFile).join();
+                fail("The delta should have failed");
+            } catch (CompletionException e) {
+                assertEquals(IllegalStateException.class, e.getCause().getClass());
+            }
+            assertSame(before, reloadableIndex.current());
+
+            // none of the failed delta was kept, so its first removal can still be made
+            final SlcspIndex changed = reloadableIndex.applyPlanDelta(deltaFile).join();
+            assertEquals("251.08", SlcspIndex.formatRate(changed.lookup("64148")));
+        }
+    }
+
+    @Test
+    public void planDeltaNeedsThePlansTheIndexWasBuiltFrom() throws Exception {
+        final Path dataDir = copyOfDataDir();
+        final Path deltaFile = temporaryFolder.newFile("mo-3.delta.csv").toPath();
+        Files.write(deltaFile, MO_3_DELTA);
+        try (
+                final ReloadableSlcspIndex reloadableIndex = ReloadableSlcspIndex.load(dataDir)
+        ) {
+            final SlcspIndex before = reloadableIndex.current();
+            final Path plansFile = dataDir.resolve("plans.csv");
+            Files.setLastModifiedTime(plansFile,
+                    FileTime.fromMillis(Files.getLastModifiedTime(plansFile).toMillis() + 60_000));
+
+            try {
+                reloadableIndex.applyPlanDelta(deltaFile).join();
+                fail("The delta should have failed");
+            } catch (CompletionException e) {
+                assertEquals(IllegalStateException.class, e.getCause().getClass());
+            }
+            assertSame(before, reloadableIndex.current());
+
+            // once the index is built from plans.csv as it is now, deltas can be applied to it
+            reloadableIndex.reloadPlans().join();
+            final SlcspIndex changed = reloadableIndex.applyPlanDelta(deltaFile).join();
+            assertEquals("251.08", SlcspIndex.formatRate(changed.lookup("64148")));
+        }
+    }
+
+    @Test
+    public void planDeltaToAnIndexLoadedFromASnapshotAloneFails() throws Exception {
+        final Path dataDir = copyOfDataDir();
+        SlcspIndex.load(dataDir).writeSnapshot(dataDir.resolve(DatasetSnapshot.FILE_NAME), "test");
+        Files.delete(dataDir.resolve("plans.csv"));
+        Files.delete(dataDir.resolve("zips.csv"));
+        final Path deltaFile = temporaryFolder.newFile("mo-3.delta.csv").toPath();
+        Files.write(deltaFile, MO_3_DELTA);
+        try (
+                final ReloadableSlcspIndex reloadableIndex = ReloadableSlcspIndex.load(dataDir)
+        ) {
+            final SlcspIndex before = reloadableIndex.current();
+
+            try {
+                reloadableIndex.applyPlanDelta(deltaFile).join();
+                fail("The delta should have failed");
+            } catch (CompletionException e) {
+                assertEquals(IllegalStateException.class, e.getCause().getClass());
+            }
+            assertSame(before, reloadableIndex.current());
+        }
+    }
+
+    @Test
+    public void reloadPlansKeepsTheZipCodes() throws Exception {
+        final Path dataDir = copyOfDataDir();
+        try (
+                final ReloadableSlcspIndex reloadableIndex = ReloadableSlcspIndex.load(dataDir)
+        ) {
+            Files.write(dataDir.resolve("plans.csv"), Arrays.asList(
+                    "plan_id,state,metal_level,rate,rate_area",
+                    "35866RG6997149,MO,Silver,234.6,3",
+                    "02345TB1383341,MO,Silver,245.2,3",
+                    "53546TY7687603,MO,Silver,251.08,3"));
+            // a change to zips.csv that only a reload of the zip codes would see
+            Files.write(dataDir.resolve("zips.csv"), Arrays.asList("zipcode,state,county_code,name,rate_area"));
+
+            final SlcspIndex reloaded = reloadableIndex.reloadPlans().join();
+
+            assertSame(reloaded, reloadableIndex.current());
+            assertEquals(3, reloaded.getPlanRows());
+            assertEquals("245.2", SlcspIndex.formatRate(reloaded.lookup("64148")));
+            assertEquals(SlcspIndex.NO_SLCSP, reloaded.lookup("36749"));
+        }
+    }
+
+    @Test
+    public void reloadZipsKeepsThePlans() throws Exception {
+        final Path dataDir = copyOfDataDir();
+        try (
+                final ReloadableSlcspIndex reloadableIndex = ReloadableSlcspIndex.load(dataDir)
+        ) {
+            // 10001 moves into the rate area of 64148
+            Files.write(dataDir.resolve("zips.csv"), Arrays.asList(
+                    "zipcode,state,county_code,name,rate_area",
+                    "10001,MO,29095,Jackson,3"));
+            // a change to plans.csv that only a reload of the plans would see
+            Files.write(dataDir.resolve("plans.csv"), Arrays.asList("plan_id,state,metal_level,rate,rate_area"));
+
+            final SlcspIndex reloaded = reloadableIndex.reloadZips().join();
+
+            assertSame(reloaded, reloadableIndex.current());
+            assertEquals(1, reloaded.getZipRows());
+            assertEquals("245.2", SlcspIndex.formatRate(reloaded.lookup("10001")));
+            assertEquals(SlcspIndex.NO_SLCSP, reloaded.lookup("64148"));
+        }
+    }
+
+    @Test
+    public void failedReloadKeepsTheCurrentIndex() {
+        final SlcspIndex first = SlcspIndex.fromFiles(Paths.get(DATA_DIR, "plans.csv"), Paths.get(DATA_DIR, "zips.csv"));
+        final AtomicInteger loads = new AtomicInteger();
+        try (
+                final ReloadableSlcspIndex reloadableIndex = new ReloadableSlcspIndex(() -> {
+                    if (loads.getAndIncrement() > 0) {
+                        throw new IllegalStateException("plans.csv is half written");
+                    }
+                    return first;
+                })
+        ) {
+            try {
+                reloadableIndex.reload().join();
+                fail("The reload should have failed");
+            } catch (CompletionException e) {
+                assertEquals(IllegalStateException.class, e.getCause().getClass());
+            }
+
+            assertSame(first, reloadableIndex.current());
+        }
+    }
+
+
+    private Path copyOfDataDir() throws IOException {
+        final Path dataDir = temporaryFolder.newFolder().toPath();
+        for (String fileName : new String[]{"plans.csv", "zips.csv"}) {
+            Files.copy(Paths.get(DATA_DIR, fileName), dataDir.resolve(fileName));
+        }
+        return dataDir;
+    }
+}
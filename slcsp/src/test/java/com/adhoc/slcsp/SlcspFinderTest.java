@@ -0,0 +1,137 @@
+package com.adhoc.slcsp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+
+public class SlcspFinderTest {
+
+    private static final String DATA_DIR = "../data";
+    private static final String ORIGINAL_FILE = DATA_DIR + "/slcsp-original.csv";
+    private static final String BACKUP_FILE = DATA_DIR + "/slcsp-tempbackup.csv";
+    private static final String INPUT_OUTPUT_FILE = DATA_DIR + "/slcsp.csv";
+    private static final String EXPECTED_RESULT_FILE = DATA_DIR + "/slcsp-expected-result.csv";
+    private static final String SNAPSHOT_FILE = DATA_DIR + "/" + DatasetSnapshot.FILE_NAME;
+    private static final String ZIPS_INDEX_FILE = DATA_DIR + "/" + ZipsCsvIndex.FILE_NAME;
+    private SlcspFinder finder = new SlcspFinder();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+
+    @Test
+    public void verifyAfterAnyChangesToProcess() throws Exception {
+
+        finder.process(DATA_DIR);
+
+        assertResultsAsExpected();
+    }
+
+
+    @Test
+    public void verifyProcessFromCompiledSnapshot() throws Exception {
+
+        finder.compile(DATA_DIR, "test-snapshot");
+        assertTrue("No snapshot was written to " + SNAPSHOT_FILE, Files.exists(Paths.get(SNAPSHOT_FILE)));
+
+        finder.process(DATA_DIR);
+
+        assertResultsAsExpected();
+    }
+
+
+    @Test
+    public void verifyStreamingProcess() throws Exception {
+
+        finder.processStreaming(DATA_DIR);
+
+        assertResultsAsExpected();
+    }
+
+
+    @Test
+    public void streamingProcessMatchesProcessForBlankAndInvalidLines() throws Exception {
+        final byte[] input = ("zipcode,rate\n64148,\n\n6423\r\n40813\n\n").getBytes(StandardCharsets.US_ASCII);
+        final Path batchDir = temporaryFolder.newFolder("batch").toPath();
+        final Path streamedDir = temporaryFolder.newFolder("streamed").toPath();
+        for (Path dir : new Path[]{batchDir, streamedDir}) {
+            Files.copy(Paths.get(DATA_DIR, "plans.csv"), dir.resolve("plans.csv"));
+            Files.copy(Paths.get(DATA_DIR, "zips.csv"), dir.resolve("zips.csv"));
+            Files.write(dir.resolve("slcsp.csv"), input);
+        }
+
+        finder.process(batchDir.toString());
+        finder.processStreaming(streamedDir.toString());
+
+        final byte[] batchResults = Files.readAllBytes(batchDir.resolve("slcsp.csv"));
+        // the header and five result lines, each ending with a line separator
+        assertEquals(7, new String(batchResults, StandardCharsets.US_ASCII).split(System.lineSeparator(), -1).length);
+        assertTrue("The streamed results differ from the batch results",
+                Arrays.equals(batchResults, Files.readAllBytes(streamedDir.resolve("slcsp.csv"))));
+    }
+
+
+    @Test
+    public void processReportsEachStage() throws Exception {
+
+        final ProcessReport report = finder.process(DATA_DIR);
+
+        final String[] expectedStages = {ProcessReport.READ_INPUT, ProcessReport.REDUCE_PLANS,
+                ProcessReport.GROUP_ZIPS, ProcessReport.JOIN, ProcessReport.WRITE_RESULTS};
+        assertEquals(expectedStages.length, report.getStages().size());
+        for (int i = 0; i < expectedStages.length; i++) {
+            assertEquals(expectedStages[i], report.getStages().get(i).getName());
+        }
+        assertEquals(51, report.getStage(ProcessReport.READ_INPUT).getRows());
+        assertEquals(Files.size(Paths.get(DATA_DIR, "plans.csv")),
+                report.getStage(ProcessReport.REDUCE_PLANS).getBytes() + "plan_id,state,metal_level,rate,rate_area\n".length());
+        assertEquals(51, report.getStage(ProcessReport.WRITE_RESULTS).getRows());
+        assertTrue(report.getTotalNanos() >= report.getStage(ProcessReport.WRITE_RESULTS).getWallNanos());
+    }
+
+
+    private void assertResultsAsExpected() throws Exception {
+        final Path expectedPath = Paths.get(EXPECTED_RESULT_FILE);
+        final Path inputOutputPath = Paths.get(INPUT_OUTPUT_FILE);
+        byte[] expectedBytes = Files.readAllBytes(expectedPath);
+        byte[] actualBytes = Files.readAllBytes(inputOutputPath);
+
+        final boolean filesTheSame = Arrays.equals(expectedBytes, actualBytes);
+        assertTrue("The actual results (in " + INPUT_OUTPUT_FILE + ") differ from the expected results (in " + EXPECTED_RESULT_FILE + ")", filesTheSame);
+    }
+
+
+    @Before
+    public void setUp() throws Exception {
+        System.out.println("Setting it up!");
+        Files.copy(Paths.get(INPUT_OUTPUT_FILE), Paths.get(BACKUP_FILE), StandardCopyOption.REPLACE_EXISTING);
+
+        final Path originalPath = Paths.get(ORIGINAL_FILE);
+        final Path destinationPath = Paths.get(INPUT_OUTPUT_FILE);
+
+        Files.copy(originalPath, destinationPath, StandardCopyOption.REPLACE_EXISTING);
+
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.move(Paths.get(BACKUP_FILE), Paths.get(INPUT_OUTPUT_FILE), StandardCopyOption.REPLACE_EXISTING);
+        Files.deleteIfExists(Paths.get(SNAPSHOT_FILE));
+        Files.deleteIfExists(Paths.get(ZIPS_INDEX_FILE));
+        System.out.println("Running: tearDown");
+    }
+
+}
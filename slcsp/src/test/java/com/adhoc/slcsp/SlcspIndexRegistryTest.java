@@ -0,0 +1,107 @@
+package com.adhoc.slcsp;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+public class SlcspIndexRegistryTest {
+
+    private static final String DATA_DIR = "../data";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path datasetsDir;
+    private long footprintBytes;
+
+
+    @Before
+    public void setUp() throws Exception {
+        datasetsDir = temporaryFolder.getRoot().toPath();
+        for (String datasetId : new String[]{"2017", "2018", "2019"}) {
+            final Path dataDir = Files.createDirectory(datasetsDir.resolve(datasetId));
+            for (String fileName : new String[]{"plans.csv", "zips.csv"}) {
+                Files.copy(Paths.get(DATA_DIR, fileName), dataDir.resolve(fileName));
+            }
+        }
+        footprintBytes = SlcspIndex.fromFiles(Paths.get(DATA_DIR, "plans.csv"), Paths.get(DATA_DIR, "zips.csv"))
+                .getFootprintBytes();
+    }
+
+
+    @Test
+    public void leastRecentlyUsedIsEvictedOverBudget() {
+        final SlcspIndexRegistry registry = new SlcspIndexRegistry(datasetsDir, 2 * footprintBytes);
+
+        final SlcspIndex index2017 = registry.get("2017");
+        registry.get("2018");
+        assertSame(index2017, registry.get("2017"));
+        registry.get("2019");
+
+        assertEquals(Arrays.asList("2017", "2019"), registry.getResidentDatasetIds());
+        assertEquals(2 * footprintBytes, registry.getResidentBytes());
+    }
+
+    @Test
+    public void evictedDatasetReloadsFromItsSnapshot() {
+        final List<String> snapshotProblems = new ArrayList<>();
+        final SlcspIndexRegistry registry = new SlcspIndexRegistry(datasetsDir, footprintBytes, snapshotProblems::add);
+
+        final SlcspIndex first = registry.get("2018");
+        assertFalse(first.isFromSnapshot());
+        assertTrue(Files.exists(datasetsDir.resolve("2018").resolve(DatasetSnapshot.FILE_NAME)));
+        registry.get("2019");
+        assertEquals(Arrays.asList("2019"), registry.getResidentDatasetIds());
+
+        final SlcspIndex reloaded = registry.get("2018");
+
+        assertNotSame(first, reloaded);
+        assertTrue(reloaded.isFromSnapshot());
+        assertEquals(first.getDatasetVersion(), reloaded.getDatasetVersion());
+        assertEquals(first.lookup("64148"), reloaded.lookup("64148"));
+        assertEquals(Collections.emptyList(), snapshotProblems);
+    }
+
+    @Test
+    public void snapshotsAreOnlyCompiledWhenAskedFor() {
+        new SlcspIndexRegistry(datasetsDir, footprintBytes).get("2018");
+
+        assertFalse(Files.exists(datasetsDir.resolve("2018").resolve(DatasetSnapshot.FILE_NAME)));
+    }
+
+    @Test
+    public void snapshotThatCantBeWrittenIsReported() throws Exception {
+        // a directory in the snapshot's place can't be replaced by it
+        final Path snapshotFile = Files.createDirectory(datasetsDir.resolve("2018").resolve(DatasetSnapshot.FILE_NAME));
+        Files.createFile(snapshotFile.resolve("in-the-way"));
+        final List<String> snapshotProblems = new ArrayList<>();
+        final SlcspIndexRegistry registry = new SlcspIndexRegistry(datasetsDir, footprintBytes, snapshotProblems::add);
+
+        final SlcspIndex slcspIndex = registry.get("2018");
+
+        assertEquals("245.2", SlcspIndex.formatRate(slcspIndex.lookup("64148")));
+        assertEquals(1, snapshotProblems.size());
+        assertTrue(snapshotProblems.get(0), snapshotProblems.get(0).contains(snapshotFile.toString()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void datasetOutsideTheRootIsRejected() {
+        new SlcspIndexRegistry(datasetsDir, footprintBytes).get("../" + datasetsDir.getFileName());
+    }
+}
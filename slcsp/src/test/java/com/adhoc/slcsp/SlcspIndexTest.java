@@ -0,0 +1,246 @@
+package com.adhoc.slcsp;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class SlcspIndexTest {
+
+    private static final String DATA_DIR = "../data";
+    private static final String EXPECTED_RESULT_FILE = DATA_DIR + "/slcsp-expected-result.csv";
+
+    private static SlcspIndex index;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void buildIndex() {
+        index = SlcspIndex.fromFiles(Paths.get(DATA_DIR, "plans.csv"), Paths.get(DATA_DIR, "zips.csv"));
+    }
+
+
+    @Test
+    public void lookupMatchesExpectedResults() throws Exception {
+        final List<String> expectedLines = Files.readAllLines(Paths.get(EXPECTED_RESULT_FILE));
+        for (String line : expectedLines.subList(1, expectedLines.size())) {
+            final String[] fields = line.split(",", -1);
+            assertEquals("SLCSP of " + fields[0], fields[1], SlcspIndex.formatRate(index.lookup(fields[0])));
+        }
+    }
+
+    @Test
+    public void batchLookupMatchesSingleLookups() {
+        final int[] zips = {64148, 67118, 40813, 6239, 99999, -1, 100000};
+        final long[] rates = new long[zips.length];
+
+        index.lookup(zips, rates);
+
+        for (int i = 0; i < zips.length; i++) {
+            assertEquals(index.lookup(zips[i]), rates[i]);
+        }
+        assertEquals(SlcspIndex.NO_SLCSP, rates[5]);
+        assertEquals(SlcspIndex.NO_SLCSP, rates[6]);
+    }
+
+    @Test
+    public void zipCodesThatAreNotFiveDigitsHaveNoSlcsp() {
+        assertEquals(SlcspIndex.NO_SLCSP, index.lookup("6414"));
+        assertEquals(SlcspIndex.NO_SLCSP, index.lookup("641488"));
+        assertEquals(SlcspIndex.NO_SLCSP, index.lookup("abcde"));
+    }
+
+    @Test
+    public void describesTheReferenceData() {
+        assertEquals(22239, index.getPlanRows());
+        assertEquals(51541, index.getZipRows());
+        assertTrue(index.getResolvedZipCount() > 0);
+        assertTrue(index.getAmbiguousZipCount() > 0);
+        assertTrue(index.getUnpricedZipCount() > 0);
+        assertEquals(100_000, index.getResolvedZipCount() + index.getAmbiguousZipCount()
+                + index.getUnpricedZipCount() + index.getUnknownZipCount());
+    }
+
+    @Test
+    public void lookupsAreCounted() {
+        final long lookupsBefore = index.getLookupCount();
+        final long lookupsWithoutSlcspBefore = index.getLookupsWithoutSlcspCount();
+
+        index.lookup("64148");
+        index.lookup("40813");
+        index.lookup(new int[]{64148, 99999}, new long[2]);
+
+        assertEquals(lookupsBefore + 4, index.getLookupCount());
+        assertEquals(lookupsWithoutSlcspBefore + 2, index.getLookupsWithoutSlcspCount());
+    }
+
+    @Test
+    public void monitorExposesTheIndexAsAnMBean() throws Exception {
+        final ReloadableSlcspIndex reloadableIndex = new ReloadableSlcspIndex(() -> index);
+        final ObjectName objectName = SlcspIndexMonitor.register(reloadableIndex);
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            assertEquals(index.getDatasetVersion(), mBeanServer.getAttribute(objectName, "DatasetVersion"));
+            assertEquals(22239L, mBeanServer.getAttribute(objectName, "PlanRows"));
+            assertEquals(index.getResolvedZipCount(), mBeanServer.getAttribute(objectName, "ResolvedZips"));
+        } finally {
+            mBeanServer.unregisterMBean(objectName);
+            reloadableIndex.close();
+        }
+    }
+
+    @Test
+    public void snapshotOfFilesChangedSinceTheyWereReadIsOutOfDate() throws Exception {
+        final Path dataDir = copyOfDataDir();
+        final SlcspIndex builtIndex = SlcspIndex.load(dataDir);
+
+        // plans.csv changes after the index read it, but before the snapshot is written
+        Files.write(dataDir.resolve("plans.csv"), Arrays.asList("99999ZZ9999999,MO,Silver,1.00,3"),
+                StandardOpenOption.APPEND);
+        builtIndex.writeSnapshot(dataDir.resolve(DatasetSnapshot.FILE_NAME), "before the change");
+
+        final List<StageReport> stageReports = new ArrayList<>();
+        final SlcspIndex reloadedIndex = SlcspIndex.load(dataDir, ZipCodeSet.all(), stageReports);
+        assertFalse(stageNames(stageReports).contains(ProcessReport.LOAD_SNAPSHOT));
+        assertEquals(22240, reloadedIndex.getPlanRows());
+    }
+
+    @Test
+    public void corruptSnapshotFallsBackToTheCsvFiles() throws Exception {
+        final Path dataDir = copyOfDataDir();
+        final Path snapshotFile = dataDir.resolve(DatasetSnapshot.FILE_NAME);
+        SlcspIndex.load(dataDir).writeSnapshot(snapshotFile, "test");
+        final byte[] snapshotBytes = Files.readAllBytes(snapshotFile);
+        snapshotBytes[snapshotBytes.length - 20] ^= 1;
+        Files.write(snapshotFile, snapshotBytes);
+
+        final List<StageReport> stageReports = new ArrayList<>();
+        final SlcspIndex reloadedIndex = SlcspIndex.load(dataDir, ZipCodeSet.all(), stageReports);
+
+        assertFalse(stageNames(stageReports).contains(ProcessReport.LOAD_SNAPSHOT));
+        assertEquals(index.lookup("64148"), reloadedIndex.lookup("64148"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void truncatedSnapshotWithoutCsvFilesFails() throws Exception {
+        final Path dataDir = copyOfDataDir();
+        final Path snapshotFile = dataDir.resolve(DatasetSnapshot.FILE_NAME);
+        SlcspIndex.load(dataDir).writeSnapshot(snapshotFile, "test");
+        final byte[] snapshotBytes = Files.readAllBytes(snapshotFile);
+        Files.write(snapshotFile, Arrays.copyOf(snapshotBytes, snapshotBytes.length / 2));
+        Files.delete(dataDir.resolve("plans.csv"));
+        Files.delete(dataDir.resolve("zips.csv"));
+
+        SlcspIndex.load(dataDir);
+    }
+
+    @Test
+    public void snapshotKeepsZipCodesInMoreThan255RateAreas() throws Exception {
+        final ZipRateAreaTable zipRateAreaTable = new ZipRateAreaTable();
+        for (int rateAreaNumber = 0; rateAreaNumber < 100; rateAreaNumber++) {
+            for (String state : new String[]{"MO", "KS", "NE"}) {
+                zipRateAreaTable.add(64148, RateAreaIds.of(state, rateAreaNumber));
+            }
+        }
+        final Path snapshotFile = temporaryFolder.getRoot().toPath().resolve(DatasetSnapshot.FILE_NAME);
+        final DatasetSnapshot.SourceFingerprint fingerprint = new DatasetSnapshot.SourceFingerprint(0, 0);
+        DatasetSnapshot.write(snapshotFile, "test", fingerprint, fingerprint, 0, 300,
+                new long[RateAreaIds.ID_SPACE], zipRateAreaTable);
+
+        final ZipRateAreaTable readTable = DatasetSnapshot.read(snapshotFile).getZipRateAreaTable();
+
+        assertEquals(300, readTable.getAll(64148).length);
+    }
+
+    @Test
+    public void rankedIndexHasTheSameSlcspAsSecondLowestSilver() throws Exception {
+        final SlcspIndex rankedIndex = SlcspIndex.fromFiles(Paths.get(DATA_DIR, "plans.csv"),
+                Paths.get(DATA_DIR, "zips.csv"), 3);
+
+        final List<String> expectedLines = Files.readAllLines(Paths.get(EXPECTED_RESULT_FILE));
+        for (String line : expectedLines.subList(1, expectedLines.size())) {
+            final String zipCode = line.split(",", -1)[0];
+            assertEquals("SLCSP of " + zipCode, index.lookup(zipCode), rankedIndex.lookup(zipCode));
+            assertEquals("Silver rank 2 of " + zipCode, index.lookup(zipCode),
+                    rankedIndex.lookup(zipCode, MetalLevel.SILVER, 2));
+        }
+    }
+
+    @Test
+    public void rankedLookupTreatsZipCodesInSeveralRateAreasAsTheSlcspDoes() throws Exception {
+        final Path dataDir = temporaryFolder.getRoot().toPath();
+        Files.write(dataDir.resolve("plans.csv"), Arrays.asList(
+                "plan_id,state,metal_level,rate,rate_area",
+                "00000AA0000001,MO,Gold,300.00,1",
+                "00000AA0000002,MO,Gold,310.00,1",
+                "00000AA0000003,MO,Gold,320.00,2",
+                "00000AA0000004,MO,Bronze,150.00,2"));
+        Files.write(dataDir.resolve("zips.csv"), Arrays.asList(
+                "zipcode,state,county_code,name,rate_area",
+                "64148,MO,29095,Jackson,1",
+                "64149,MO,29095,Jackson,1",
+                "64149,MO,29047,Clay,2"));
+
+        final SlcspIndex rankedIndex = SlcspIndex.fromFiles(dataDir.resolve("plans.csv"), dataDir.resolve("zips.csv"),
+                2);
+
+        assertEquals("310.0", SlcspIndex.formatRate(rankedIndex.lookup("64148", MetalLevel.GOLD, 2)));
+        // only one of its rate areas has a second lowest Gold rate...
+        assertEquals("310.0", SlcspIndex.formatRate(rankedIndex.lookup("64149", MetalLevel.GOLD, 2)));
+        // ...but both have a lowest one
+        assertEquals(SlcspIndex.NO_SLCSP, rankedIndex.lookup("64149", MetalLevel.GOLD, 1));
+        assertEquals("150.0", SlcspIndex.formatRate(rankedIndex.lookup("64149", MetalLevel.BRONZE, 1)));
+        assertEquals(SlcspIndex.NO_SLCSP, rankedIndex.lookup("99999", MetalLevel.GOLD, 1));
+        assertEquals(SlcspIndex.NO_SLCSP, rankedIndex.lookup("6414", MetalLevel.GOLD, 1));
+
+        // reloading the zip codes keeps the ranked rates, reloading the plans rebuilds them
+        assertEquals("150.0", SlcspIndex.formatRate(
+                rankedIndex.withZipsFrom(dataDir.resolve("zips.csv")).lookup("64149", MetalLevel.BRONZE, 1)));
+        assertEquals("150.0", SlcspIndex.formatRate(
+                rankedIndex.withPlansFrom(dataDir.resolve("plans.csv")).lookup("64149", MetalLevel.BRONZE, 1)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rankedLookupNeedsAnIndexBuiltWithRankedRates() {
+        index.lookup("64148", MetalLevel.GOLD, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rankedLookupAboveTheMaximumRankIsRejected() {
+        SlcspIndex.fromFiles(Paths.get(DATA_DIR, "plans.csv"), Paths.get(DATA_DIR, "zips.csv"), 2)
+                .lookup("64148", MetalLevel.GOLD, 3);
+    }
+
+    private Path copyOfDataDir() throws Exception {
+        final Path dataDir = temporaryFolder.getRoot().toPath();
+        for (String fileName : new String[]{"plans.csv", "zips.csv"}) {
+            Files.copy(Paths.get(DATA_DIR, fileName), dataDir.resolve(fileName));
+        }
+        return dataDir;
+    }
+
+    private static List<String> stageNames(final List<StageReport> stageReports) {
+        final List<String> stageNames = new ArrayList<>();
+        for (StageReport stageReport : stageReports) {
+            stageNames.add(stageReport.getName());
+        }
+        return stageNames;
+    }
+}
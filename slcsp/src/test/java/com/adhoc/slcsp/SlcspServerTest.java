@@ -0,0 +1,125 @@
+package com.adhoc.slcsp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class SlcspServerTest {
+
+    private static final String DATA_DIR = "../data";
+
+    private static SlcspIndex index;
+
+    private SlcspServer server;
+
+
+    @BeforeClass
+    public static void buildIndex() {
+        index = SlcspIndex.fromFiles(Paths.get(DATA_DIR, "plans.csv"), Paths.get(DATA_DIR, "zips.csv"));
+    }
+
+    @Before
+    public void startServer() throws Exception {
+        server = new SlcspServer(() -> index, 0);
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop();
+    }
+
+
+    @Test
+    public void getDecodesTheZipParameter() throws Exception {
+        final HttpURLConnection connection = open("/slcsp?other=1&%7Aip=%36%34148");
+
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("zipcode,rate\n64148,245.2\n", readBody(connection.getInputStream()));
+    }
+
+    @Test
+    public void postAnswersEachLineInOrder() throws Exception {
+        final HttpURLConnection connection = post("64148\n40813,\n");
+
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("zipcode,rate\n64148,245.2\n40813,\n", readBody(connection.getInputStream()));
+    }
+
+    @Test
+    public void getOfAnythingButAFiveDigitZipCodeIsRefused() throws Exception {
+        assertEquals(400, open("/slcsp?zip=1%0A99999,1.00").getResponseCode());
+        assertEquals(400, open("/slcsp?zip=6414").getResponseCode());
+    }
+
+    @Test
+    public void postKeepsBlankLinesInPlace() throws Exception {
+        final HttpURLConnection connection = post("64148\n\n40813\n");
+
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("zipcode,rate\n64148,245.2\n,\n40813,\n", readBody(connection.getInputStream()));
+    }
+
+    @Test
+    public void postOfALineThatIsNotAZipCodeIsRefused() throws Exception {
+        assertEquals(400, post("64148\n99999,1.00\n").getResponseCode());
+    }
+
+    @Test
+    public void otherPathsAreNotFound() throws Exception {
+        assertEquals(404, open("/slcspfoo?zip=64148").getResponseCode());
+    }
+
+    @Test
+    public void postLargerThanTheLimitIsRefused() throws Exception {
+        final StringBuilder body = new StringBuilder();
+        while (body.length() <= SlcspServer.MAX_REQUEST_BYTES) {
+            body.append("64148\n");
+        }
+
+        assertEquals(413, post(body.toString()).getResponseCode());
+    }
+
+
+    private HttpURLConnection open(final String pathAndQuery) throws IOException {
+        return (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort() + pathAndQuery).openConnection();
+    }
+
+    private HttpURLConnection post(final String body) throws IOException {
+        final HttpURLConnection connection = open("/slcsp");
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (
+                final OutputStream requestBody = connection.getOutputStream()
+        ) {
+            requestBody.write(body.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            // the server may refuse a body before it has all been sent; the response code says why
+        }
+        return connection;
+    }
+
+    private static String readBody(final InputStream in) throws IOException {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final byte[] chunk = new byte[8192];
+        int bytesRead;
+        while ((bytesRead = in.read(chunk)) >= 0) {
+            body.write(chunk, 0, bytesRead);
+        }
+        in.close();
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
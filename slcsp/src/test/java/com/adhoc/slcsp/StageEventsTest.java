@@ -0,0 +1,55 @@
+package com.adhoc.slcsp;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class StageEventsTest {
+
+    private static final String DATA_DIR = "../data";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+
+    @Test
+    public void loadingTheIndexRecordsAnEventPerStage() throws Exception {
+        final Path recordingFile = temporaryFolder.getRoot().toPath().resolve("slcsp.jfr");
+        try (
+                final Recording recording = new Recording()
+        ) {
+            recording.enable("com.adhoc.slcsp.PlanReduction");
+            recording.enable("com.adhoc.slcsp.ZipGrouping");
+            recording.enable("com.adhoc.slcsp.Join");
+            recording.start();
+            SlcspIndex.fromFiles(Paths.get(DATA_DIR, "plans.csv"), Paths.get(DATA_DIR, "zips.csv"));
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+
+        final List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile).stream()
+                .filter(x -> x.getEventType().getName().startsWith("com.adhoc.slcsp."))
+                .collect(Collectors.toList());
+        assertEquals(3, events.size());
+
+        final RecordedEvent planReduction = events.stream()
+                .filter(x -> x.getEventType().getName().equals("com.adhoc.slcsp.PlanReduction"))
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+        assertEquals(22239, planReduction.getLong("rows"));
+        assertTrue(planReduction.getString("dataset").endsWith("plans.csv"));
+        assertTrue(planReduction.getDuration().toNanos() > 0);
+    }
+}
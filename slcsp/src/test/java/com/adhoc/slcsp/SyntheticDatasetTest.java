@@ -0,0 +1,68 @@
+package com.adhoc.slcsp;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static junit.framework.TestCase.assertTrue;
+
+
+public class SyntheticDatasetTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path dataDir;
+    private SlcspFinder finder = new SlcspFinder();
+
+
+    @Before
+    public void setUp() throws Exception {
+        dataDir = temporaryFolder.getRoot().toPath();
+        // Plenty of zip codes in two rate areas, and rate areas with too few Silver plans, so every case turns up
+        new SyntheticDataset(50_000, 400, 20_000, 20_000, 0.3, 0.2, 42L).writeTo(dataDir);
+    }
+
+
+    @Test
+    public void processMatchesExpectedResults() throws Exception {
+
+        finder.process(dataDir.toString());
+
+        assertResultsAsExpected();
+    }
+
+
+    @Test
+    public void processStreamingMatchesExpectedResults() throws Exception {
+
+        finder.processStreaming(dataDir.toString());
+
+        assertResultsAsExpected();
+    }
+
+
+    @Test
+    public void sameSeedGivesSameFiles() throws Exception {
+        final Path otherDir = temporaryFolder.newFolder().toPath();
+        new SyntheticDataset(50_000, 400, 20_000, 20_000, 0.3, 0.2, 42L).writeTo(otherDir);
+
+        for (String fileName : new String[]{"plans.csv", "zips.csv", "slcsp.csv", "slcsp-expected-result.csv"}) {
+            assertTrue(fileName + " differs", Arrays.equals(Files.readAllBytes(dataDir.resolve(fileName)),
+                    Files.readAllBytes(otherDir.resolve(fileName))));
+        }
+    }
+
+
+    private void assertResultsAsExpected() throws Exception {
+        final byte[] expectedBytes = Files.readAllBytes(dataDir.resolve("slcsp-expected-result.csv"));
+        final byte[] actualBytes = Files.readAllBytes(dataDir.resolve("slcsp.csv"));
+
+        assertTrue("The actual results differ from the expected results", Arrays.equals(expectedBytes, actualBytes));
+    }
+}
@@ -0,0 +1,36 @@
+package com.adhoc.slcsp;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class ZipCodeSetTest {
+
+    @Test
+    public void containsOnlyTheFiveDigitZipCodesGiven() {
+        final ZipCodeSet zipCodeSet = ZipCodeSet.of(Arrays.asList("00000", "06239", "64148", "99999", "6423", "6423a"));
+
+        assertTrue(zipCodeSet.contains(0));
+        assertTrue(zipCodeSet.contains(6239));
+        assertTrue(zipCodeSet.contains(64148));
+        assertTrue(zipCodeSet.contains(99999));
+
+        // neighbours, sharing a word of the bitset with a zip code in the set, and a bit with one a word away
+        assertFalse(zipCodeSet.contains(1));
+        assertFalse(zipCodeSet.contains(6238));
+        assertFalse(zipCodeSet.contains(64149));
+        assertFalse(zipCodeSet.contains(64148 + 64));
+        assertFalse(zipCodeSet.contains(6423));
+    }
+
+    @Test
+    public void allContainsEveryZipCode() {
+        for (int zip = 0; zip < ZipRateAreaTable.ZIP_CODE_SPACE; zip++) {
+            assertTrue(ZipCodeSet.all().contains(zip));
+        }
+    }
+}
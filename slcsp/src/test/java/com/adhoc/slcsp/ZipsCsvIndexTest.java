@@ -0,0 +1,100 @@
+package com.adhoc.slcsp;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class ZipsCsvIndexTest {
+
+    private static final String DATA_DIR = "../data";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path dataDir;
+    private Path zipsFile;
+
+
+    @Before
+    public void setUp() throws Exception {
+        dataDir = temporaryFolder.getRoot().toPath();
+        for (String fileName : new String[]{"plans.csv", "zips.csv", "slcsp.csv", "slcsp-expected-result.csv"}) {
+            Files.copy(Paths.get(DATA_DIR, fileName), dataDir.resolve(fileName));
+        }
+        zipsFile = dataDir.resolve("zips.csv");
+    }
+
+
+    @Test
+    public void indexedLookupMatchesAFullScan() throws Exception {
+        ZipsCsvIndex.write(zipsFile);
+        final List<String> zipCodes = new SlcspFinder().buildInputList(dataDir.resolve("slcsp.csv").toString());
+        final ZipCodeSet requestedZips = ZipCodeSet.of(zipCodes);
+
+        final StageMetrics indexedStage = StageMetrics.start(ProcessReport.GROUP_ZIPS);
+        final ZipRateAreaTable indexed = SlcspIndex.buildZipRateAreaTable(zipsFile, requestedZips, indexedStage);
+        final ZipRateAreaTable scanned = new ZipRateAreaTable();
+        new ZipsCsvScanner(zipsFile).scan(requestedZips, scanned::add, StageMetrics.start(ProcessReport.GROUP_ZIPS));
+
+        for (int zip = 0; zip < ZipRateAreaTable.ZIP_CODE_SPACE; zip++) {
+            assertEquals(scanned.get(zip), indexed.get(zip));
+            assertArrayEquals(scanned.getAll(zip), indexed.getAll(zip));
+        }
+        // only the rows of the requested zip codes were read
+        indexedStage.stop();
+        final long zipRows = Files.readAllLines(zipsFile).size() - 1;
+        assertTrue(indexedStage.toReport().getRows() < zipRows / 10);
+    }
+
+    @Test
+    public void processWithIndexMatchesExpectedResults() throws Exception {
+        ZipsCsvIndex.write(zipsFile);
+
+        new SlcspFinder().process(dataDir.toString());
+
+        assertTrue("The actual results differ from the expected results", Arrays.equals(
+                Files.readAllBytes(dataDir.resolve("slcsp-expected-result.csv")),
+                Files.readAllBytes(dataDir.resolve("slcsp.csv"))));
+    }
+
+    @Test
+    public void rowsTheScannerSkipsAreLeftOut() throws Exception {
+        Files.write(zipsFile, Arrays.asList("6414,MO,29095,Jackson,3", "641488,MO,29095,Jackson,3",
+                "00001,MO,29095,Jackson,3"), StandardOpenOption.APPEND);
+
+        ZipsCsvIndex.write(zipsFile);
+
+        assertNotNull(ZipsCsvIndex.openIfCurrent(zipsFile));
+        final ZipRateAreaTable zipRateAreaTable = SlcspIndex.buildZipRateAreaTable(zipsFile,
+                ZipCodeSet.of(Arrays.asList("00001")));
+        assertEquals(RateAreaIds.of("MO", 3), zipRateAreaTable.get(1));
+    }
+
+    @Test
+    public void indexOlderThanZipsFileIsIgnored() throws Exception {
+        ZipsCsvIndex.write(zipsFile);
+        assertNotNull(ZipsCsvIndex.openIfCurrent(zipsFile));
+
+        Files.write(zipsFile, Arrays.asList("00001,MO,29095,Jackson,3"), StandardOpenOption.APPEND);
+
+        assertNull(ZipsCsvIndex.openIfCurrent(zipsFile));
+        final ZipRateAreaTable zipRateAreaTable = SlcspIndex.buildZipRateAreaTable(zipsFile,
+                ZipCodeSet.of(Arrays.asList("00001")));
+        assertEquals(RateAreaIds.of("MO", 3), zipRateAreaTable.get(1));
+    }
+}